@@ -0,0 +1,202 @@
+package com.example.ddmdemo.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Exact top-k over float vectors against top-k over their int8 quantization, brute force and through the
+// similar-report HNSW graph, on the embeddings the application stored (-p storeFile=...). Recall@k of each
+// int8 and HNSW ranking against exact float top-k is printed during setup.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class QuantizationBenchmark {
+
+    private static final int DIMENSIONS = 384;
+
+    @Param({"embedding-cache/embeddings.bin"})
+    private String storeFile;
+
+    @Param({"100000"})
+    private int maxVectors;
+
+    @Param({"10"})
+    private int k;
+
+    @Param({"0.999"})
+    private double confidence;
+
+    @Param({"16"})
+    private int m;
+
+    @Param({"100"})
+    private int efConstruction;
+
+    @Param({"64"})
+    private int efSearch;
+
+    private float[][] vectors;
+
+    private byte[][] quantized;
+
+    private float[] corrections;
+
+    private ScalarQuantizer quantizer;
+
+    private float[][] queries;
+
+    private byte[][] quantizedQueries;
+
+    private HnswIndex floatGraph;
+
+    private HnswIndex int8Graph;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        var random = new Random(42);
+        var sample = loadVectors(random);
+        vectors = sample.toArray(float[][]::new);
+        quantizer = ScalarQuantizer.calibrate(sample, confidence);
+        quantized = new byte[vectors.length][];
+        corrections = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            quantized[i] = quantizer.quantize(vectors[i]);
+            corrections[i] = quantizer.correction(quantized[i]);
+        }
+
+        queries = new float[Math.min(100, vectors.length)][];
+        quantizedQueries = new byte[queries.length][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = vectors[random.nextInt(vectors.length)];
+            quantizedQueries[i] = quantizer.quantize(queries[i]);
+        }
+
+        floatGraph = new HnswIndex(DIMENSIONS, m, efConstruction);
+        int8Graph = new HnswIndex(DIMENSIONS, m, efConstruction, quantizer);
+        for (int i = 0; i < vectors.length; i++) {
+            floatGraph.add(Integer.toString(i), vectors[i]);
+            int8Graph.add(Integer.toString(i), vectors[i]);
+        }
+
+        double recall = 0;
+        double floatGraphRecall = 0;
+        double int8GraphRecall = 0;
+        for (int i = 0; i < queries.length; i++) {
+            var expected = new HashSet<Integer>();
+            for (int index : VectorMath.topK(queries[i], vectors, k)) {
+                expected.add(index);
+            }
+            recall += recall(expected, topKQuantized(quantizedQueries[i]));
+            floatGraphRecall += recall(expected, ordinals(floatGraph.search(queries[i], k, efSearch, id -> false)));
+            int8GraphRecall += recall(expected, ordinals(int8Graph.search(queries[i], k, efSearch, id -> false)));
+        }
+        System.out.printf("%n%d vectors, int8 range [%f, %f], %d vs %d bytes per vector%n"
+                + "recall@%d: int8 brute force %.4f, float HNSW %.4f, int8 HNSW %.4f (ef %d)%n",
+            vectors.length, quantizer.getMin(), quantizer.getMax(), DIMENSIONS * Float.BYTES, DIMENSIONS,
+            k, recall / queries.length, floatGraphRecall / queries.length, int8GraphRecall / queries.length,
+            efSearch);
+    }
+
+    @Benchmark
+    public int[] floatTopK() {
+        return VectorMath.topK(queries[next++ % queries.length], vectors, k);
+    }
+
+    @Benchmark
+    public int[] int8TopK() {
+        return topKQuantized(quantizedQueries[next++ % quantizedQueries.length]);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Neighbor> floatHnsw() {
+        return floatGraph.search(queries[next++ % queries.length], k, efSearch, id -> false);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Neighbor> int8Hnsw() {
+        return int8Graph.search(queries[next++ % queries.length], k, efSearch, id -> false);
+    }
+
+    private static double recall(HashSet<Integer> expected, int[] found) {
+        int hits = 0;
+        for (int index : found) {
+            hits += expected.contains(index) ? 1 : 0;
+        }
+        return (double) hits / expected.size();
+    }
+
+    private static int[] ordinals(List<HnswIndex.Neighbor> neighbors) {
+        return neighbors.stream().mapToInt(neighbor -> Integer.parseInt(neighbor.id())).toArray();
+    }
+
+    // Unit vectors, so the dot product is the cosine, scored the way HnswIndex scores int8 nodes
+    private int[] topKQuantized(byte[] query) {
+        var indices = new int[k];
+        var scores = new float[k];
+        Arrays.fill(scores, Float.NEGATIVE_INFINITY);
+        float queryCorrection = quantizer.correction(query);
+        for (int i = 0; i < quantized.length; i++) {
+            float score = quantizer.dot(query, queryCorrection, quantized[i], corrections[i]);
+            if (score <= scores[k - 1]) {
+                continue;
+            }
+            int position = k - 1;
+            while (position > 0 && scores[position - 1] < score) {
+                scores[position] = scores[position - 1];
+                indices[position] = indices[position - 1];
+                position--;
+            }
+            scores[position] = score;
+            indices[position] = i;
+        }
+        return indices;
+    }
+
+    private List<float[]> loadVectors(Random random) throws Exception {
+        var path = Path.of(storeFile);
+        if (Files.exists(path)) {
+            try (var store = new MappedEmbeddingStore(path, DIMENSIONS, Long.MAX_VALUE)) {
+                if (store.size() >= k) {
+                    // Unit length, as HnswIndex stores them
+                    var sample = store.sample(maxVectors);
+                    sample.forEach(VectorMath::normalize);
+                    return sample;
+                }
+            }
+        }
+
+        // Without stored embeddings the numbers say little about our data, but the harness still runs
+        System.out.printf("%nNo embeddings in %s, falling back to random unit vectors%n", storeFile);
+        var sample = new ArrayList<float[]>(maxVectors);
+        for (int i = 0; i < maxVectors; i++) {
+            var vector = new float[DIMENSIONS];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            sample.add(VectorMath.normalize(vector));
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ddmdemo.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cosine similarity as VectorizationUtil used to compute it (ND4J) against the scalar and Vector API kernels
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class VectorMathBenchmark {
+
+    @Param({"384"})
+    private int dimensions;
+
+    @Param({"10000"})
+    private int candidateCount;
+
+    private final ScalarVectorOps scalar = new ScalarVectorOps();
+
+    private final SimdVectorOps simd = new SimdVectorOps();
+
+    private float[] a;
+
+    private float[] b;
+
+    private float[][] candidates;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        a = randomVector(random);
+        b = randomVector(random);
+        candidates = new float[candidateCount][];
+        for (int i = 0; i < candidateCount; i++) {
+            candidates[i] = randomVector(random);
+        }
+    }
+
+    @Benchmark
+    public double cosineNd4j() {
+        INDArray vectorA = Nd4j.create(a);
+        INDArray vectorB = Nd4j.create(b);
+        double dotProduct = vectorA.mul(vectorB).sumNumber().doubleValue();
+        return dotProduct / (vectorA.norm2Number().doubleValue() * vectorB.norm2Number().doubleValue());
+    }
+
+    @Benchmark
+    public float cosineScalar() {
+        return scalar.dot(a, b) / (float) Math.sqrt((double) scalar.sumOfSquares(a) * scalar.sumOfSquares(b));
+    }
+
+    @Benchmark
+    public float cosineSimd() {
+        return simd.dot(a, b) / (float) Math.sqrt((double) simd.sumOfSquares(a) * simd.sumOfSquares(b));
+    }
+
+    @Benchmark
+    public int[] topTen() {
+        return VectorMath.topK(a, candidates, 10);
+    }
+
+    private float[] randomVector(Random random) {
+        var vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -3,7 +3,9 @@ package com.example.ddmdemo.configuration;
 import com.example.ddmdemo.exceptionhandling.ErrorObject;
 import com.example.ddmdemo.exceptionhandling.exception.LoadingException;
 import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
+import com.example.ddmdemo.exceptionhandling.exception.ModelNotReadyException;
 import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
+import com.example.ddmdemo.exceptionhandling.exception.ServiceBusyException;
 import com.example.ddmdemo.exceptionhandling.exception.StorageException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 @ControllerAdvice
 public class ErrorHandlerConfiguration {
@@ -23,6 +26,28 @@ public class ErrorHandlerConfiguration {
         return new ErrorObject(request, ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ModelNotReadyException.class)
+    @ResponseBody
+    ErrorObject handleModelNotReadyException(HttpServletRequest request, ModelNotReadyException ex) {
+        return new ErrorObject(request, ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ServiceBusyException.class)
+    @ResponseBody
+    ErrorObject handleServiceBusyException(HttpServletRequest request, ServiceBusyException ex) {
+        return new ErrorObject(request, ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    @ResponseBody
+    ErrorObject handleMaxUploadSizeExceededException(HttpServletRequest request,
+                                                     MaxUploadSizeExceededException ex) {
+        return new ErrorObject(request, ex.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(LoadingException.class)
     @ResponseBody
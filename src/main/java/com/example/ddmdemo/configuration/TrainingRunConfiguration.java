@@ -0,0 +1,34 @@
+package com.example.ddmdemo.configuration;
+
+import java.lang.management.ManagementFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// Used by the cds build profile: the JVM exits once the context is ready, so the classes loaded
+// during startup can be dumped into a CDS archive. Only exists under the cds Spring profile, so no
+// other context, tests included, can be shut down by it. AOT processing runs with that profile and bakes
+// the listener into the archived run as well, hence the exit flag is still checked at runtime.
+@Configuration
+@Profile("cds")
+@Slf4j
+public class TrainingRunConfiguration implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Value("${startup.exit-when-ready:false}")
+    private boolean exitWhenReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!exitWhenReady) {
+            return;
+        }
+
+        log.info("Training run ready after {} ms of JVM uptime, exiting",
+            ManagementFactory.getRuntimeMXBean().getUptime());
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+    }
+}
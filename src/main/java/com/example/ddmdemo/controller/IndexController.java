@@ -1,11 +1,16 @@
 package com.example.ddmdemo.controller;
 
+import com.example.ddmdemo.dto.DocumentBatchDTO;
 import com.example.ddmdemo.dto.DummyDocumentFileDTO;
 import com.example.ddmdemo.dto.DummyDocumentFileResponseDTO;
+import com.example.ddmdemo.dto.IndexingJobDTO;
 import com.example.ddmdemo.model.MalwareAnalysis;
+import com.example.ddmdemo.service.interfaces.BatchIndexingService;
 import com.example.ddmdemo.service.interfaces.IndexingService;
+import java.io.InputStream;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -16,15 +21,38 @@ public class IndexController {
 
     private final IndexingService indexingService;
 
+    private final BatchIndexingService batchIndexingService;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public MalwareAnalysis addDocumentFile(@ModelAttribute DummyDocumentFileDTO documentFile) {
         return indexingService.indexDocument(documentFile.file());
     }
 
+    // Raw request body, so large reports bypass multipart parsing entirely
+    @PostMapping(value = "/stream", consumes = {MediaType.APPLICATION_PDF_VALUE,
+        MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public MalwareAnalysis addDocumentStream(@RequestParam("fileName") String fileName,
+                                             InputStream documentContent) {
+        return indexingService.indexDocument(documentContent, fileName);
+    }
+
     @PostMapping("/confirm")
     @ResponseStatus(HttpStatus.CREATED)
     public MalwareAnalysis confirmAndIndex(@RequestBody MalwareAnalysis analysis) {
         return indexingService.confirmAndIndex(analysis);
     }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IndexingJobDTO addDocumentFiles(@ModelAttribute DocumentBatchDTO documentBatch) {
+        return batchIndexingService.submit(documentBatch.files(),
+            Boolean.TRUE.equals(documentBatch.autoConfirm()));
+    }
+
+    @GetMapping("/batch/{jobId}")
+    public IndexingJobDTO getBatchStatus(@PathVariable String jobId) {
+        return batchIndexingService.getJob(jobId);
+    }
 }
@@ -1,14 +1,32 @@
 package com.example.ddmdemo.controller;
 
+import com.example.ddmdemo.dto.FacetCountDTO;
+import com.example.ddmdemo.dto.FacetedReportPageDTO;
+import com.example.ddmdemo.dto.HybridReportHitDTO;
+import com.example.ddmdemo.dto.PassageHitDTO;
+import com.example.ddmdemo.dto.ReportCursorPageDTO;
+import com.example.ddmdemo.dto.ReportExportQueryDTO;
 import com.example.ddmdemo.dto.SearchQueryDTO;
+import com.example.ddmdemo.dto.SimilarReportDTO;
 import com.example.ddmdemo.indexmodel.DummyIndex;
+import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
 import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import com.example.ddmdemo.model.ReportProjection;
+import com.example.ddmdemo.service.interfaces.ReportExportService;
 import com.example.ddmdemo.service.interfaces.SearchService;
+import com.example.ddmdemo.service.interfaces.SimilarReportService;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/search")
@@ -18,6 +36,10 @@ public class SearchController {
 
     private final SearchService searchService;
 
+    private final SimilarReportService similarReportService;
+
+    private final ReportExportService reportExportService;
+
 //    @PostMapping("/simple")
 //    public Page<DummyIndex> simpleSearch(@RequestParam Boolean isKnn,
 //                                         @RequestBody SearchQueryDTO simpleSearchQuery,
@@ -35,8 +57,94 @@ public class SearchController {
     @GetMapping()
     public Page<MalwareAnalysisIndex> search(
             @RequestParam("q") String q,
+            @RequestParam(value = "projection", defaultValue = "full") String projection,
+            @PageableDefault(page = 0, size = 20) Pageable pageable
+    ) {
+        return searchService.searchReports(q, pageable, parseProjection(projection));
+    }
+
+    @GetMapping("/faceted")
+    public FacetedReportPageDTO searchFaceted(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "projection", defaultValue = "full") String projection,
+            @RequestParam(value = "facetSize", defaultValue = "10") int facetSize,
             @PageableDefault(page = 0, size = 20) Pageable pageable
     ) {
-        return searchService.searchReports(q, pageable);
+        return searchService.searchReportsFaceted(q, pageable, parseProjection(projection), facetSize);
+    }
+
+    @GetMapping("/facets")
+    public Map<String, List<FacetCountDTO>> facets(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "size", defaultValue = "10") int size
+    ) {
+        return searchService.facets(q, size);
+    }
+
+    // First call with q, then pass back the returned cursor until it comes back null
+    @GetMapping("/cursor")
+    public ReportCursorPageDTO searchWithCursor(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "100") int size
+    ) {
+        return searchService.searchReportsCursor(q, cursor, size);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "classification", required = false) String classification,
+            @RequestParam(value = "organization", required = false) String organization,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format
+    ) {
+        var body = reportExportService.export(new ReportExportQueryDTO(q, classification, organization, fields,
+                format));
+        boolean csv = "csv".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"reports." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    @GetMapping("/passages")
+    public List<PassageHitDTO> searchPassages(
+            @RequestParam("q") String q,
+            @RequestParam(value = "k", defaultValue = "10") int k
+    ) {
+        return searchService.searchPassages(q, k);
+    }
+
+    @GetMapping("/hybrid")
+    public List<HybridReportHitDTO> searchHybrid(
+            @RequestParam("q") String q,
+            @RequestParam(value = "classification", required = false) String classification,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        return searchService.searchReportsHybrid(q, classification, size);
+    }
+
+    @GetMapping("/similar/{fileName}")
+    public List<SimilarReportDTO> findSimilar(
+            @PathVariable String fileName,
+            @RequestParam(value = "by", defaultValue = "title") String by,
+            @RequestParam(value = "k", defaultValue = "10") int k
+    ) {
+        return similarReportService.findSimilar(fileName, by, k);
+    }
+
+    @PostMapping("/similar/rebuild")
+    public int rebuildSimilarIndex() {
+        return similarReportService.rebuild();
+    }
+
+    private static ReportProjection parseProjection(String projection) {
+        try {
+            return ReportProjection.valueOf(projection.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new MalformedQueryException("Unknown projection " + projection + ".");
+        }
     }
 }
@@ -0,0 +1,7 @@
+package com.example.ddmdemo.dto;
+
+import java.util.List;
+import org.springframework.web.multipart.MultipartFile;
+
+public record DocumentBatchDTO(List<MultipartFile> files, Boolean autoConfirm) {
+}
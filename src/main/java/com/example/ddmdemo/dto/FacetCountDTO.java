@@ -0,0 +1,4 @@
+package com.example.ddmdemo.dto;
+
+public record FacetCountDTO(String value, long count) {
+}
@@ -0,0 +1,10 @@
+package com.example.ddmdemo.dto;
+
+import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Page;
+
+// Facet name (malwareName, securityOrganization, analystFullName, threatClassification) -> top values
+public record FacetedReportPageDTO(Page<MalwareAnalysisIndex> page, Map<String, List<FacetCountDTO>> facets) {
+}
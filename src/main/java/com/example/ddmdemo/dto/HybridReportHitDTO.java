@@ -0,0 +1,8 @@
+package com.example.ddmdemo.dto;
+
+import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+
+// Ranks are 1-based and null when the report did not come up in that leg
+public record HybridReportHitDTO(MalwareAnalysisIndex report, double score, Integer lexicalRank,
+                                 Integer vectorRank) {
+}
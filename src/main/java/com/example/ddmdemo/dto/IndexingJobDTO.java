@@ -0,0 +1,8 @@
+package com.example.ddmdemo.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record IndexingJobDTO(String jobId, String state, LocalDateTime submittedAt, int total,
+                             int completed, int failed, List<IndexingJobItemDTO> items) {
+}
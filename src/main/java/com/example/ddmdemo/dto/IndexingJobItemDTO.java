@@ -0,0 +1,7 @@
+package com.example.ddmdemo.dto;
+
+import com.example.ddmdemo.model.MalwareAnalysis;
+
+public record IndexingJobItemDTO(String originalFilename, String status, MalwareAnalysis analysis,
+                                 String error) {
+}
@@ -0,0 +1,5 @@
+package com.example.ddmdemo.dto;
+
+public record PassageHitDTO(String serverFilename, Integer databaseId, String source, Integer chunkIndex,
+                            Integer startOffset, Integer endOffset, String text, Double score) {
+}
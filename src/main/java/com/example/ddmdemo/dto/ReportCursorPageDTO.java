@@ -0,0 +1,8 @@
+package com.example.ddmdemo.dto;
+
+import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import java.util.List;
+
+// cursor is null on the last page
+public record ReportCursorPageDTO(List<MalwareAnalysisIndex> content, long totalHits, String cursor) {
+}
@@ -0,0 +1,8 @@
+package com.example.ddmdemo.dto;
+
+import java.util.List;
+
+// Blank q exports everything matching the filters; null fields means the default column set
+public record ReportExportQueryDTO(String q, String classification, String organization, List<String> fields,
+                                   String format) {
+}
@@ -0,0 +1,8 @@
+package com.example.ddmdemo.exceptionhandling.exception;
+
+public class EmbeddingException extends RuntimeException {
+
+    public EmbeddingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.ddmdemo.exceptionhandling.exception;
+
+public class ModelNotReadyException extends RuntimeException {
+
+    public ModelNotReadyException(String message) {
+        super(message);
+    }
+}
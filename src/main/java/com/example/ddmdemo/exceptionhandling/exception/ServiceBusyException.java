@@ -0,0 +1,8 @@
+package com.example.ddmdemo.exceptionhandling.exception;
+
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
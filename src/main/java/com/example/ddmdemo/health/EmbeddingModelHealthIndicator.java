@@ -0,0 +1,26 @@
+package com.example.ddmdemo.health;
+
+import com.example.ddmdemo.util.VectorizationUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Only the "ingest" group answers 503 for this; search does not need the model, so the root endpoint maps
+// OUT_OF_SERVICE to 200 and nodes without the model stay in the load balancer
+@Component
+@RequiredArgsConstructor
+public class EmbeddingModelHealthIndicator implements HealthIndicator {
+
+    private final VectorizationUtil vectorizationUtil;
+
+    @Override
+    public Health health() {
+        if (vectorizationUtil.isReady()) {
+            return Health.up().withDetail("model", vectorizationUtil.getModelId()).build();
+        }
+        // Not DOWN even when loading failed, which would take the root endpoint down with it
+        return Health.outOfService().withDetail("model", vectorizationUtil.getModelId())
+            .withDetail("state", vectorizationUtil.isFailed() ? "failed" : "warming up").build();
+    }
+}
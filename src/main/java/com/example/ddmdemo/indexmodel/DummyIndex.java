@@ -8,6 +8,7 @@ import lombok.Setter;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Mapping;
 import org.springframework.data.elasticsearch.annotations.Setting;
 
 @Getter
@@ -36,6 +37,8 @@ public class DummyIndex {
     @Field(type = FieldType.Integer, store = true, name = "database_id")
     private Integer databaseId;
 
+    // int8_hnsw keeps the HNSW graph over 1-byte components; the float vectors stay in _source
     @Field(type = FieldType.Dense_Vector, dims = 384, similarity = "cosine")
+    @Mapping(mappingPath = "/configuration/int8-hnsw-vector-384.json")
     private float[] vectorizedContent;
 }
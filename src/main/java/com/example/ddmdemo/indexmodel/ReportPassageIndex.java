@@ -0,0 +1,53 @@
+package com.example.ddmdemo.indexmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+
+// One embedded window of a report, pointing back to its report by server filename and character offsets
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(indexName = "report_passages")
+public class ReportPassageIndex {
+
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Keyword)
+    private String serverFilename;
+
+    @Field(type = FieldType.Integer)
+    private Integer databaseId;
+
+    // CONTENT or BEHAVIOR
+    @Field(type = FieldType.Keyword)
+    private String source;
+
+    // Copied from the report so kNN searches can pre-filter on it
+    @Field(type = FieldType.Keyword)
+    private String threatClassification;
+
+    @Field(type = FieldType.Integer)
+    private Integer chunkIndex;
+
+    @Field(type = FieldType.Integer)
+    private Integer startOffset;
+
+    @Field(type = FieldType.Integer)
+    private Integer endOffset;
+
+    @Field(type = FieldType.Text, index = false)
+    private String text;
+
+    @Field(type = FieldType.Dense_Vector, dims = 384, similarity = "cosine")
+    @Mapping(mappingPath = "/configuration/int8-hnsw-vector-384.json")
+    private float[] vector;
+}
@@ -0,0 +1,135 @@
+package com.example.ddmdemo.indexrepository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
+import com.example.ddmdemo.indexmodel.DummyIndex;
+import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import com.example.ddmdemo.indexmodel.ReportPassageIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Component;
+
+// Buffers index requests for all indices and sends them as _bulk batches.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ElasticsearchBulkWriter {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final IndexGeneration indexGeneration;
+
+    @Value("${elasticsearch.bulk.max-operations:1000}")
+    private int maxOperations;
+
+    @Value("${elasticsearch.bulk.max-size-mb:5}")
+    private long maxSizeMb;
+
+    @Value("${elasticsearch.bulk.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${elasticsearch.bulk.max-concurrent-requests:2}")
+    private int maxConcurrentRequests;
+
+    private BulkIngester<CompletableFuture<String>> ingester;
+
+    @PostConstruct
+    void startIngester() {
+        ingester = BulkIngester.of(b -> b
+            .client(elasticsearchClient)
+            .maxOperations(maxOperations)
+            .maxSize(maxSizeMb * 1024 * 1024)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            .flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS)
+            .listener(new CompletingListener()));
+    }
+
+    // Sends whatever is still buffered and waits for in-flight requests
+    @PreDestroy
+    void stopIngester() {
+        ingester.close();
+    }
+
+    public CompletableFuture<String> index(DummyIndex document) {
+        return add(DummyIndex.class, document.getId(), document);
+    }
+
+    public CompletableFuture<String> index(MalwareAnalysisIndex document) {
+        return add(MalwareAnalysisIndex.class, document.getId(), document);
+    }
+
+    public CompletableFuture<String> index(ReportPassageIndex document) {
+        return add(ReportPassageIndex.class, document.getId(), document);
+    }
+
+    public void flush() {
+        ingester.flush();
+    }
+
+    private CompletableFuture<String> add(Class<?> entityClass, String id, Object entity) {
+        var indexName = elasticsearchOperations.getIndexCoordinatesFor(entityClass).getIndexName();
+        // Same field names and type hints the repositories would write
+        var source = elasticsearchOperations.getElasticsearchConverter().mapObject(entity);
+
+        var operation = BulkOperation.of(op -> op.index(idx -> {
+            idx.index(indexName).document(source);
+            if (id != null) {
+                idx.id(id);
+            }
+            return idx;
+        }));
+
+        var result = new CompletableFuture<String>();
+        ingester.add(operation, result);
+        return result;
+    }
+
+    private class CompletingListener implements BulkListener<CompletableFuture<String>> {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request,
+                               List<CompletableFuture<String>> contexts) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request,
+                              List<CompletableFuture<String>> contexts, BulkResponse response) {
+            var items = response.items();
+            for (int i = 0; i < items.size(); i++) {
+                var item = items.get(i);
+                if (item.error() != null) {
+                    contexts.get(i).completeExceptionally(new StorageException(
+                        "Failed to index document in " + item.index() + ": " + item.error().reason()));
+                } else {
+                    contexts.get(i).complete(item.id());
+                }
+            }
+            indexGeneration.advance();
+            log.debug("Bulk request {} indexed {} document(s) in {} ms", executionId, items.size(),
+                response.took());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request,
+                              List<CompletableFuture<String>> contexts, Throwable failure) {
+            log.error("Bulk request {} with {} document(s) failed", executionId, contexts.size(), failure);
+            for (var context : contexts) {
+                context.completeExceptionally(failure);
+            }
+        }
+    }
+}
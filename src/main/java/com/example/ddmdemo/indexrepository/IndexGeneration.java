@@ -0,0 +1,47 @@
+package com.example.ddmdemo.indexrepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Counter bumped by every index write. Anything cached from search results is keyed by the generation it
+// was read at, so a write makes it unreachable without tracking which entries the write touched.
+@Component
+public class IndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    // A write becomes searchable on the next index refresh; results cached before that must not outlive it
+    @Value("${elasticsearch.refresh-interval-ms:1000}")
+    private long refreshIntervalMs;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void startScheduler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "index-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    public void advance() {
+        generation.incrementAndGet();
+        scheduler.schedule(generation::incrementAndGet, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ddmdemo.indexrepository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Point-in-time readers behind cursor searches and exports. Each page renews the keep-alive; readers nobody
+// paged through for a whole keep-alive are closed here instead of holding segments until Elasticsearch expires
+// them. Every reader is judged by the keep-alive it was opened with.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PointInTimeRegistry {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Value("${search.cursor.keep-alive-seconds:60}")
+    private long keepAliveSeconds;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void startSweeper() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "pit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::closeAbandoned, keepAliveSeconds, keepAliveSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stopSweeper() {
+        sweeper.shutdownNow();
+        List.copyOf(leases.keySet()).forEach(this::close);
+    }
+
+    public String keepAlive() {
+        return keepAliveSeconds + "s";
+    }
+
+    public String open(String indexName) {
+        return open(indexName, keepAliveSeconds);
+    }
+
+    // Searches on the returned reader must pass the same keep-alive, e.g. keepAliveSeconds + "s"
+    public String open(String indexName, long keepAliveSeconds) {
+        try {
+            var id = elasticsearchClient.openPointInTime(o -> o
+                .index(indexName)
+                .keepAlive(t -> t.time(keepAliveSeconds + "s"))).id();
+            leases.put(id, new Lease(TimeUnit.SECONDS.toNanos(keepAliveSeconds), System.nanoTime()));
+            return id;
+        } catch (IOException e) {
+            throw new StorageException("Could not open a point in time on " + indexName + ".");
+        }
+    }
+
+    // Elasticsearch may hand back a new id for the same reader after any search
+    public void touch(String previousId, String currentId) {
+        touch(previousId, currentId, keepAliveSeconds);
+    }
+
+    // For readers opened with their own keep-alive, which their searches pass along as well
+    public void touch(String previousId, String currentId, long keepAliveSeconds) {
+        if (!previousId.equals(currentId)) {
+            leases.remove(previousId);
+        }
+        leases.put(currentId, new Lease(TimeUnit.SECONDS.toNanos(keepAliveSeconds), System.nanoTime()));
+    }
+
+    // Marks a reader as used without searching on it; an id that was replaced or closed meanwhile stays gone
+    public void renew(String id) {
+        leases.computeIfPresent(id, (ignored, lease) -> new Lease(lease.keepAliveNanos(), System.nanoTime()));
+    }
+
+    public void close(String id) {
+        leases.remove(id);
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(id));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not close point in time {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void closeAbandoned() {
+        long now = System.nanoTime();
+        leases.forEach((id, lease) -> {
+            if (now - lease.usedAt() > lease.keepAliveNanos()) {
+                close(id);
+            }
+        });
+        log.debug("{} point in time reader(s) open", leases.size());
+    }
+
+    // usedAt is the System.nanoTime() of the reader's last use
+    private record Lease(long keepAliveNanos, long usedAt) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.ddmdemo.indexrepository;
+
+import com.example.ddmdemo.indexmodel.ReportPassageIndex;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReportPassageIndexRepository
+        extends ElasticsearchRepository<ReportPassageIndex, String> {
+}
@@ -0,0 +1,82 @@
+package com.example.ddmdemo.indexrepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.script.Script;
+import org.springframework.stereotype.Component;
+
+// Stored mustache search templates, kept next to the index settings under /configuration/search-templates.
+// A template id carries a digest of its source: an edited file is registered under a new id on the next
+// deploy, while a template already on the cluster is left alone, so boosts can be tuned there in place.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchTemplateRegistry {
+
+    private static final String LOCATION = "configuration/search-templates/";
+
+    private static final String SUFFIX = ".mustache";
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final Map<String, String> templateIds = new ConcurrentHashMap<>();
+
+    // Elasticsearch may still be starting; anything missed here is registered on first use
+    @EventListener(ApplicationReadyEvent.class)
+    void registerAll() {
+        try {
+            for (var resource : new PathMatchingResourcePatternResolver().getResources(
+                "classpath*:" + LOCATION + "*" + SUFFIX)) {
+                var fileName = resource.getFilename();
+                templateId(fileName.substring(0, fileName.length() - SUFFIX.length()));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not register search templates at startup: {}", e.getMessage());
+        }
+    }
+
+    public String templateId(String name) {
+        return templateIds.computeIfAbsent(name, this::register);
+    }
+
+    private String register(String name) {
+        String source;
+        try (var in = new ClassPathResource(LOCATION + name + SUFFIX).getInputStream()) {
+            source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Search template " + name + " is missing.", e);
+        }
+
+        var id = name + "-" + digest(source);
+        if (elasticsearchOperations.getScript(id) == null) {
+            elasticsearchOperations.putScript(Script.builder()
+                .withId(id)
+                .withLanguage("mustache")
+                .withSource(source)
+                .build());
+            log.info("Registered search template {}", id);
+        }
+        return id;
+    }
+
+    private static String digest(String source) {
+        try {
+            var hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 4);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
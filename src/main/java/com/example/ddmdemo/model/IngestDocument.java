@@ -0,0 +1,42 @@
+package com.example.ddmdemo.model;
+
+import com.example.ddmdemo.util.SpooledUpload;
+import java.util.List;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class IngestDocument {
+
+    private SpooledUpload upload;
+
+    private String title;
+
+    private String content;
+
+    private String language;
+
+    private String behaviorLanguage;
+
+    private MalwareAnalysis analysis;
+
+    private String serverFilename;
+
+    private String mimeType;
+
+    private float[] vector;
+
+    // MinHash signature of the content; null when the content has no words
+    private int[] signature;
+
+    private List<TextChunk> passages = List.of();
+
+    // Aligned with passages; null when the passages could not be embedded
+    private List<float[]> passageVectors;
+
+    // Content was ingested before; downstream stages pass it through untouched
+    private boolean duplicate;
+}
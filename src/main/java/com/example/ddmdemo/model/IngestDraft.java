@@ -0,0 +1,6 @@
+package com.example.ddmdemo.model;
+
+// Server-side leftovers of indexDocument, kept until the analyst confirms the parsed analysis. Only what
+// confirmAndIndex reads is kept: the description as parsed and the language detected for it.
+public record IngestDraft(String fileName, String behaviorDescription, String behaviorLanguage) {
+}
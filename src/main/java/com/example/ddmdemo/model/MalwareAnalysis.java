@@ -1,5 +1,6 @@
 package com.example.ddmdemo.model;
 
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -24,4 +25,7 @@ public class MalwareAnalysis {
     private String sampleHash;
 
     private String fileName;
+
+    // Filled at ingest; stored reports whose text is nearly the same as this one
+    private List<NearDuplicate> nearDuplicates;
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package com.example.ddmdemo.model;
+
+// A stored report whose text overlaps this one; similarity is the estimated Jaccard index of their shingles.
+public record NearDuplicate(String fileName, double similarity) {
+}
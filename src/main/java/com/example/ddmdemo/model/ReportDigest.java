@@ -0,0 +1,55 @@
+package com.example.ddmdemo.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Everything derived from one report's bytes, keyed by their SHA-256.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "report_digest")
+public class ReportDigest {
+
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "server_filename")
+    private String serverFilename;
+
+    @Column(name = "database_id")
+    private Integer databaseId;
+
+    @Column(name = "analyst_full_name")
+    private String analystFullName;
+
+    @Column(name = "security_organization")
+    private String securityOrganization;
+
+    @Column(name = "malware_name")
+    private String malwareName;
+
+    @Column(name = "behavior_description", length = 30000)
+    private String behaviorDescription;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "threat_classification")
+    private ThreatClassification threatClassification;
+
+    @Column(name = "sample_hash")
+    private String sampleHash;
+
+    // 384 little-endian floats
+    @Column(name = "embedding")
+    private byte[] embedding;
+}
@@ -0,0 +1,33 @@
+package com.example.ddmdemo.model;
+
+import java.util.List;
+
+// Which parts of a report a search hit carries. LIST reads only doc values and asks for no highlights, since
+// the highlighter would load the stored _source with its full behavior descriptions anyway.
+public enum ReportProjection {
+    FULL(null, List.of()),
+    LIST(false, List.of("fileName.keyword", "analystFullName.keyword", "securityOrganization.keyword",
+        "malwareName.keyword", "threatClassification", "sampleHash"));
+
+    // _source filter as sent to Elasticsearch, null for the whole document
+    private final Object sourceFilter;
+
+    private final List<String> docValueFields;
+
+    ReportProjection(Object sourceFilter, List<String> docValueFields) {
+        this.sourceFilter = sourceFilter;
+        this.docValueFields = docValueFields;
+    }
+
+    public Object getSourceFilter() {
+        return sourceFilter;
+    }
+
+    public List<String> getDocValueFields() {
+        return docValueFields;
+    }
+
+    public boolean loadsSource() {
+        return sourceFilter == null;
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.ddmdemo.model;
+
+// Window of the source text; offsets are character positions in that text, end exclusive.
+public record TextChunk(String source, int index, int startOffset, int endOffset, String text) {
+}
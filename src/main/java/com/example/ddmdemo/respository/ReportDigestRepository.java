@@ -0,0 +1,9 @@
+package com.example.ddmdemo.respository;
+
+import com.example.ddmdemo.model.ReportDigest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReportDigestRepository extends JpaRepository<ReportDigest, String> {
+}
@@ -0,0 +1,331 @@
+package com.example.ddmdemo.service.impl;
+
+import com.example.ddmdemo.dto.IndexingJobDTO;
+import com.example.ddmdemo.dto.IndexingJobItemDTO;
+import com.example.ddmdemo.exceptionhandling.exception.LoadingException;
+import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
+import com.example.ddmdemo.indexrepository.ElasticsearchBulkWriter;
+import com.example.ddmdemo.model.IngestDocument;
+import com.example.ddmdemo.model.MalwareAnalysis;
+import com.example.ddmdemo.service.interfaces.BatchIndexingService;
+import com.example.ddmdemo.service.interfaces.EmbeddingService;
+import com.example.ddmdemo.util.SpooledUpload;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchIndexingServiceImpl implements BatchIndexingService {
+
+    private final IngestStages ingestStages;
+
+    private final ElasticsearchBulkWriter bulkWriter;
+
+    private final EmbeddingService embeddingService;
+
+    private final Map<String, IndexingJob> jobs = new ConcurrentHashMap<>();
+
+    // Files handed to the pipeline and not finished yet; whoever removes an entry fails or completes its item
+    private final Map<SpooledUpload, JobItem> pending = new ConcurrentHashMap<>();
+
+    // 0 means "one thread per available core"
+    @Value("${ingest.batch.extract-threads:0}")
+    private int extractThreads;
+
+    @Value("${ingest.batch.analyze-threads:0}")
+    private int analyzeThreads;
+
+    @Value("${ingest.batch.store-threads:4}")
+    private int storeThreads;
+
+    @Value("${ingest.batch.embed-threads:0}")
+    private int embedThreads;
+
+    @Value("${ingest.batch.index-threads:2}")
+    private int indexThreads;
+
+    @Value("${ingest.batch.max-in-flight:32}")
+    private int maxInFlight;
+
+    @Value("${ingest.batch.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds;
+
+    @Value("${ingest.batch.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private ExecutorService dispatchExecutor;
+
+    private ThreadPoolExecutor extractExecutor;
+
+    private ThreadPoolExecutor analyzeExecutor;
+
+    private ThreadPoolExecutor storeExecutor;
+
+    private ThreadPoolExecutor embedExecutor;
+
+    private ThreadPoolExecutor indexExecutor;
+
+    private Semaphore inFlight;
+
+    @PostConstruct
+    void startExecutors() {
+        inFlight = new Semaphore(maxInFlight);
+        dispatchExecutor = Executors.newSingleThreadExecutor(namedThreads("ingest-dispatch"));
+        extractExecutor = newStageExecutor("ingest-extract", extractThreads);
+        analyzeExecutor = newStageExecutor("ingest-analyze", analyzeThreads);
+        storeExecutor = newStageExecutor("ingest-store", storeThreads);
+        embedExecutor = newStageExecutor("ingest-embed", embedThreads);
+        indexExecutor = newStageExecutor("ingest-index", indexThreads);
+    }
+
+    // Files already in a stage get the timeout to finish; the rest are failed and their spooled copies removed
+    @PreDestroy
+    void stopExecutors() throws InterruptedException {
+        dispatchExecutor.shutdownNow();
+        var stages = List.of(extractExecutor, analyzeExecutor, storeExecutor, embedExecutor, indexExecutor);
+        stages.forEach(ThreadPoolExecutor::shutdown);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+        try {
+            for (var executor : stages) {
+                executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            stages.forEach(ThreadPoolExecutor::shutdownNow);
+            var interrupted = new IllegalStateException("Indexing was interrupted by a shutdown.");
+            pending.forEach((file, item) -> {
+                if (pending.remove(file, item)) {
+                    file.close();
+                    item.fail(interrupted);
+                }
+            });
+        }
+    }
+
+    @Override
+    public IndexingJobDTO submit(List<MultipartFile> documentFiles, boolean autoConfirm) {
+        if (documentFiles == null || documentFiles.isEmpty()) {
+            throw new LoadingException("No files were uploaded.");
+        }
+        embeddingService.awaitReady();
+        purgeExpiredJobs();
+
+        var job = new IndexingJob(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+
+        // Uploaded parts are removed once the request completes, so copy them out on the request thread
+        var spooledFiles = new ArrayList<SpooledUpload>(documentFiles.size());
+        for (var documentFile : documentFiles) {
+            var item = job.addItem(documentFile.getOriginalFilename());
+            try {
+                spooledFiles.add(SpooledUpload.of(documentFile));
+            } catch (RuntimeException e) {
+                item.fail(e);
+                spooledFiles.add(null);
+            }
+        }
+
+        for (int i = 0; i < spooledFiles.size(); i++) {
+            if (spooledFiles.get(i) != null) {
+                pending.put(spooledFiles.get(i), job.items.get(i));
+            }
+        }
+
+        // Only this thread waits for room in the pipeline; stage threads and the threads completing
+        // embedding futures never block on a full stage
+        dispatchExecutor.execute(() -> {
+            try {
+                for (int i = 0; i < spooledFiles.size(); i++) {
+                    if (spooledFiles.get(i) != null) {
+                        inFlight.acquire();
+                        schedule(job.items.get(i), spooledFiles.get(i), autoConfirm);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutting down; stopExecutors fails whatever was not scheduled
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        log.info("Accepted indexing job {} with {} file(s)", job.id, documentFiles.size());
+        return job.toDto();
+    }
+
+    @Override
+    public IndexingJobDTO getJob(String jobId) {
+        var job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Indexing job " + jobId + " does not exist.");
+        }
+        return job.toDto();
+    }
+
+    private void schedule(JobItem item, SpooledUpload file, boolean autoConfirm) {
+        CompletableFuture
+            .supplyAsync(() -> item.enter("EXTRACTING", ingestStages::extract).apply(file), extractExecutor)
+            .thenApplyAsync(item.enter("ANALYZING", ingestStages::analyze), analyzeExecutor)
+            .thenApplyAsync(item.enter("FINGERPRINTING", ingestStages::fingerprint), analyzeExecutor)
+            .thenApplyAsync(item.enter("CHUNKING", ingestStages::chunk), analyzeExecutor)
+            .thenApplyAsync(item.enter("STORING", ingestStages::store), storeExecutor)
+            .thenComposeAsync(item.enter("EMBEDDING", ingestStages::embedAsync), embedExecutor)
+            .thenComposeAsync(item.enter("INDEXING", (IngestDocument document) -> index(document, autoConfirm)),
+                indexExecutor)
+            .whenComplete((document, error) -> {
+                inFlight.release();
+                if (pending.remove(file) == null) {
+                    // Already failed by a shutdown
+                    return;
+                }
+                file.close();
+                if (error != null) {
+                    item.fail(error);
+                } else {
+                    item.succeed(document.getAnalysis());
+                }
+            });
+    }
+
+    // Index writes go through the bulk writer; the future completes once Elasticsearch acknowledged them
+    private CompletableFuture<IngestDocument> index(IngestDocument document, boolean autoConfirm) {
+        var indexed = ingestStages.indexBuffered(document);
+        if (!autoConfirm) {
+            return indexed;
+        }
+
+        return indexed.thenCompose(done -> bulkWriter
+            .index(ingestStages.toAnalysisIndex(done.getAnalysis()))
+            .thenApply(id -> done));
+    }
+
+    private void purgeExpiredJobs() {
+        var threshold = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.submittedAt.isBefore(threshold));
+    }
+
+    // Stage queues never hold more than max-in-flight files in total, so they need no bound of their own
+    private ThreadPoolExecutor newStageExecutor(String name, int threads) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), namedThreads(name));
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class IndexingJob {
+
+        private final String id;
+
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private final List<JobItem> items = new ArrayList<>();
+
+        IndexingJob(String id) {
+            this.id = id;
+        }
+
+        synchronized JobItem addItem(String originalFilename) {
+            var item = new JobItem(originalFilename);
+            items.add(item);
+            return item;
+        }
+
+        synchronized boolean isFinished() {
+            return items.stream().allMatch(JobItem::isFinished);
+        }
+
+        synchronized IndexingJobDTO toDto() {
+            int completed = 0;
+            int failed = 0;
+            var itemDtos = new ArrayList<IndexingJobItemDTO>(items.size());
+            for (var item : items) {
+                if ("INDEXED".equals(item.status)) {
+                    completed++;
+                } else if ("FAILED".equals(item.status)) {
+                    failed++;
+                }
+                itemDtos.add(item.toDto());
+            }
+
+            String state;
+            if (completed + failed < items.size()) {
+                state = "RUNNING";
+            } else {
+                state = failed > 0 ? "COMPLETED_WITH_ERRORS" : "COMPLETED";
+            }
+            return new IndexingJobDTO(id, state, submittedAt, items.size(), completed, failed, itemDtos);
+        }
+    }
+
+    private static class JobItem {
+
+        private final String originalFilename;
+
+        private volatile String status = "QUEUED";
+
+        private volatile MalwareAnalysis analysis;
+
+        private volatile String error;
+
+        JobItem(String originalFilename) {
+            this.originalFilename = originalFilename;
+        }
+
+        <T, R> Function<T, R> enter(String stage, Function<T, R> step) {
+            return input -> {
+                status = stage;
+                return step.apply(input);
+            };
+        }
+
+        void succeed(MalwareAnalysis result) {
+            analysis = result;
+            status = "INDEXED";
+        }
+
+        void fail(Throwable cause) {
+            var root = cause instanceof CompletionException && cause.getCause() != null
+                ? cause.getCause() : cause;
+            log.warn("Indexing of {} failed: {}", originalFilename, root.getMessage());
+            error = root.getMessage();
+            status = "FAILED";
+        }
+
+        boolean isFinished() {
+            return "INDEXED".equals(status) || "FAILED".equals(status);
+        }
+
+        IndexingJobItemDTO toDto() {
+            return new IndexingJobItemDTO(originalFilename, status, analysis, error);
+        }
+    }
+}
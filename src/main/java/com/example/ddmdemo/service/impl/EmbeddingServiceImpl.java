@@ -0,0 +1,220 @@
+package com.example.ddmdemo.service.impl;
+
+import ai.djl.translate.TranslateException;
+import com.example.ddmdemo.exceptionhandling.exception.EmbeddingException;
+import com.example.ddmdemo.exceptionhandling.exception.ModelNotReadyException;
+import com.example.ddmdemo.service.interfaces.EmbeddingService;
+import com.example.ddmdemo.util.EmbeddingCache;
+import com.example.ddmdemo.util.EmbeddingKey;
+import com.example.ddmdemo.util.VectorizationUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Requests from all callers are queued and run through the model in micro-batches, which costs far
+// less per text than one forward pass each.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingServiceImpl implements EmbeddingService {
+
+    private final VectorizationUtil vectorizationUtil;
+
+    private final EmbeddingCache embeddingCache;
+
+    @Value("${embedding.batch.max-size:32}")
+    private int maxBatchSize;
+
+    // How long the first request of a batch waits for company
+    @Value("${embedding.batch.max-wait-ms:10}")
+    private long maxWaitMs;
+
+    @Value("${embedding.batch.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${embedding.warmup.ingest-wait-ms:5000}")
+    private long ingestWaitMs;
+
+    private BlockingQueue<PendingEmbedding> queue;
+
+    private Thread batcher;
+
+    // One batch in flight per pooled predictor
+    private ExecutorService workers;
+
+    private Semaphore freePredictors;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void startBatcher() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        int poolSize = vectorizationUtil.getPoolSize();
+        freePredictors = new Semaphore(poolSize);
+        var counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            var thread = new Thread(runnable, "embedding-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        batcher = new Thread(this::runBatches, "embedding-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    @PreDestroy
+    void stopBatcher() {
+        running = false;
+        batcher.interrupt();
+        workers.shutdown();
+
+        var abandoned = new ArrayList<PendingEmbedding>();
+        queue.drainTo(abandoned);
+        fail(abandoned, "Embedding service is shutting down.");
+    }
+
+    @Override
+    public CompletableFuture<float[]> embedAsync(String text) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new EmbeddingException("Embedding service is shutting down."));
+        }
+
+        var input = text == null ? "" : text;
+        var key = embeddingCache.keyFor(vectorizationUtil.getModelId(), input);
+        var cached = embeddingCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (!vectorizationUtil.isReady()) {
+            return CompletableFuture.failedFuture(new ModelNotReadyException(
+                "Embedding model is still warming up, try again shortly."));
+        }
+
+        var pending = new PendingEmbedding(input, key, new CompletableFuture<>());
+        try {
+            // A full queue pushes back on the callers instead of growing without bound
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingException("Interrupted while waiting to queue text for embedding.");
+        }
+        return pending.result();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        try {
+            return embedAsync(text).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof EmbeddingException embeddingException) {
+                throw embeddingException;
+            }
+            if (e.getCause() instanceof ModelNotReadyException notReady) {
+                throw notReady;
+            }
+            throw new EmbeddingException("Could not calculate vector representation.");
+        }
+    }
+
+    @Override
+    public void awaitReady() {
+        vectorizationUtil.awaitReady(ingestWaitMs);
+    }
+
+    private void runBatches() {
+        var batch = new ArrayList<PendingEmbedding>(maxBatchSize);
+        while (running) {
+            try {
+                // While every predictor is busy, new requests keep piling up for the next batch
+                freePredictors.acquire();
+                collect(batch);
+                dispatch(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(batch, "Embedding service is shutting down.");
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Blocks for the first request, then takes whatever arrives until the batch is full or the window closes
+    private void collect(List<PendingEmbedding> batch) throws InterruptedException {
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+
+            var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void dispatch(List<PendingEmbedding> batch) {
+        try {
+            workers.execute(() -> {
+                try {
+                    predict(batch);
+                } finally {
+                    freePredictors.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            freePredictors.release();
+            fail(batch, "Embedding service is shutting down.");
+        }
+    }
+
+    private void predict(List<PendingEmbedding> batch) {
+        List<float[]> vectors;
+        try {
+            vectors = vectorizationUtil.getEmbeddings(batch.stream().map(PendingEmbedding::text).toList());
+        } catch (TranslateException | RuntimeException e) {
+            log.error("Could not calculate vector representation for a batch of {} text(s)", batch.size(), e);
+            fail(batch, "Could not calculate vector representation.");
+            return;
+        }
+
+        log.debug("Embedded a batch of {} text(s)", batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            var pending = batch.get(i);
+            embeddingCache.put(pending.key(), vectors.get(i));
+            pending.result().complete(vectors.get(i));
+        }
+    }
+
+    private static void fail(List<PendingEmbedding> batch, String message) {
+        for (var pending : batch) {
+            pending.result().completeExceptionally(new EmbeddingException(message));
+        }
+    }
+
+    private record PendingEmbedding(String text, EmbeddingKey key, CompletableFuture<float[]> result) {
+    }
+}
@@ -3,6 +3,7 @@ package com.example.ddmdemo.service.impl;
 import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
 import com.example.ddmdemo.exceptionhandling.exception.StorageException;
 import com.example.ddmdemo.service.interfaces.FileService;
+import com.example.ddmdemo.util.SpooledUpload;
 import io.minio.GetObjectArgs;
 import io.minio.GetObjectResponse;
 import io.minio.GetPresignedObjectUrlArgs;
@@ -15,7 +16,6 @@ import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 @Service
 @RequiredArgsConstructor
@@ -27,7 +27,7 @@ public class FileServiceMinioImpl implements FileService {
     private String bucketName;
 
     @Override
-    public String store(MultipartFile file, String serverFilename) {
+    public String store(SpooledUpload file, String serverFilename) {
         if (file.isEmpty()) {
             throw new StorageException("Failed to store empty file.");
         }
@@ -36,13 +36,13 @@ public class FileServiceMinioImpl implements FileService {
             Objects.requireNonNull(file.getOriginalFilename()).split("\\.");
         var extension = originalFilenameTokens[originalFilenameTokens.length - 1];
 
-        try {
+        try (var content = file.openStream()) {
             PutObjectArgs args = PutObjectArgs.builder()
                 .bucket(bucketName)
                 .object(serverFilename + "." + extension)
                 .headers(Collections.singletonMap("Content-Disposition",
                     "attachment; filename=\"" + file.getOriginalFilename() + "\""))
-                .stream(file.getInputStream(), file.getInputStream().available(), -1)
+                .stream(content, file.getSize(), -1)
                 .build();
             minioClient.putObject(args);
         } catch (Exception e) {
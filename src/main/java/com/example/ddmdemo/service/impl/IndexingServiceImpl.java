@@ -1,32 +1,23 @@
 package com.example.ddmdemo.service.impl;
 
-import ai.djl.translate.TranslateException;
-import com.example.ddmdemo.exceptionhandling.exception.LoadingException;
-import com.example.ddmdemo.exceptionhandling.exception.StorageException;
-import com.example.ddmdemo.indexmodel.DummyIndex;
-import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
-import com.example.ddmdemo.indexrepository.DummyIndexRepository;
-import com.example.ddmdemo.model.DummyTable;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.json.JsonData;
 import com.example.ddmdemo.model.MalwareAnalysis;
-import com.example.ddmdemo.respository.DummyRepository;
+import com.example.ddmdemo.indexrepository.IndexGeneration;
 import com.example.ddmdemo.indexrepository.MalwareAnalysisIndexRepository;
-import com.example.ddmdemo.service.interfaces.FileService;
+import com.example.ddmdemo.service.interfaces.EmbeddingService;
 import com.example.ddmdemo.service.interfaces.IndexingService;
-import com.example.ddmdemo.util.MalwareAnalysisParser;
-import com.example.ddmdemo.util.VectorizationUtil;
+import com.example.ddmdemo.util.SpooledUpload;
 import jakarta.transaction.Transactional;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Objects;
-import java.util.UUID;
+import java.io.InputStream;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.tika.Tika;
-import org.apache.tika.language.detect.LanguageDetector;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
@@ -34,128 +25,53 @@ import org.springframework.web.multipart.MultipartFile;
 @Slf4j
 public class IndexingServiceImpl implements IndexingService {
 
-    private final DummyIndexRepository dummyIndexRepository;
+    private final IngestStages ingestStages;
 
-    private final DummyRepository dummyRepository;
+    private final MalwareAnalysisIndexRepository malwareAnalysisIndexRepository;
 
-    private final FileService fileService;
+    private final EmbeddingService embeddingService;
 
-    private final LanguageDetector languageDetector;
+    private final IndexGeneration indexGeneration;
 
-    private final MalwareAnalysisParser malwareAnalysisParser;
+    private final ElasticsearchClient elasticsearchClient;
 
-    private final MalwareAnalysisIndexRepository malwareAnalysisIndexRepository;
+    // Multipart uploads are capped by the servlet container, raw streams only here
+    @Value("${ingest.stream.max-size:200MB}")
+    private DataSize maxStreamSize;
 
     @Override
     @Transactional
     public MalwareAnalysis indexDocument(MultipartFile documentFile) {
-        var newEntity = new DummyTable();
-        var newIndex = new DummyIndex();
-
-        var title = Objects.requireNonNull(documentFile.getOriginalFilename()).split("\\.")[0];
-        newIndex.setTitle(title);
-        newEntity.setTitle(title);
-
-        // 1) Extract text
-        var documentContent = extractDocumentContent(documentFile);
-
-        // 2) Parse malware analysis fields
-        var analysis = malwareAnalysisParser.parse(documentContent);
-        log.info("Parsed MalwareAnalysis from report '{}': {}", title, analysis);
-
-        // Keep SR/EN logic
-        if (detectLanguage(documentContent).equals("SR")) {
-            newIndex.setContentSr(documentContent);
-        } else {
-            newIndex.setContentEn(documentContent);
+        embeddingService.awaitReady();
+        try (var upload = SpooledUpload.of(documentFile)) {
+            return indexSpooled(upload);
         }
-        newEntity.setContent(documentContent);
-
-        // Store file
-        var serverFilename = fileService.store(documentFile, UUID.randomUUID().toString());
-        newIndex.setServerFilename(serverFilename);
-        newEntity.setServerFilename(serverFilename);
-        analysis.setFileName(serverFilename);
-
-        // Mime type + save entity
-        newEntity.setMimeType(detectMimeType(documentFile));
-        var savedEntity = dummyRepository.save(newEntity);
-
-        // Vectorize
-        try {
-            newIndex.setVectorizedContent(VectorizationUtil.getEmbedding(title));
-        } catch (TranslateException e) {
-            log.error("Could not calculate vector representation for document with ID: {}", savedEntity.getId(), e);
-        }
-
-        newIndex.setDatabaseId(savedEntity.getId());
-        dummyIndexRepository.save(newIndex);
-
-        return analysis;
     }
 
-    private String extractDocumentContent(MultipartFile multipartPdfFile) {
-        if (multipartPdfFile == null || multipartPdfFile.isEmpty()) {
-            throw new LoadingException("PDF file is missing or empty.");
-        }
-
-        try (var pdfStream = multipartPdfFile.getInputStream();
-             var pdDocument = PDDocument.load(pdfStream)) {
-
-            // Optional: remove this if you expect encrypted PDFs and handle them differently
-            if (pdDocument.isEncrypted()) {
-                throw new LoadingException("PDF file is encrypted and cannot be parsed.");
-            }
-
-            var stripper = new PDFTextStripper();
-
-            // Keep reading order more natural for many reports
-            stripper.setSortByPosition(true);
-
-            // Optional: if you want all pages explicitly
-            stripper.setStartPage(1);
-            stripper.setEndPage(pdDocument.getNumberOfPages());
-
-            var text = stripper.getText(pdDocument);
-
-            if (text == null || text.isBlank()) {
-                throw new LoadingException("PDF file contains no extractable text.");
-            }
-
-            return text.trim();
-        } catch (IOException e) {
-            throw new LoadingException("Error while trying to load PDF file content.");
+    @Override
+    @Transactional
+    public MalwareAnalysis indexDocument(InputStream documentContent, String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            throw new IllegalArgumentException("fileName is required (original filename).");
         }
-    }
+        // Rejected before the body is read, so a client does not upload a large report for nothing
+        embeddingService.awaitReady();
 
-    private String detectLanguage(String text) {
-        var detectedLanguage = languageDetector.detect(text).getLanguage().toUpperCase();
-        if (detectedLanguage.equals("HR")) {
-            detectedLanguage = "SR";
+        try (var upload = SpooledUpload.of(documentContent, originalFilename, maxStreamSize.toBytes())) {
+            return indexSpooled(upload);
         }
-
-        return detectedLanguage;
     }
 
-    private String detectMimeType(MultipartFile file) {
-        var contentAnalyzer = new Tika();
+    private MalwareAnalysis indexSpooled(SpooledUpload upload) {
+        var document = ingestStages.extract(upload);
+        ingestStages.analyze(document);
+        ingestStages.fingerprint(document);
+        ingestStages.chunk(document);
+        ingestStages.store(document);
+        ingestStages.embed(document);
+        ingestStages.index(document);
 
-        String trueMimeType;
-        String specifiedMimeType;
-        try {
-            trueMimeType = contentAnalyzer.detect(file.getBytes());
-            specifiedMimeType =
-                Files.probeContentType(Path.of(Objects.requireNonNull(file.getOriginalFilename())));
-        } catch (IOException e) {
-            throw new StorageException("Failed to detect mime type for file.");
-        }
-
-        if (!trueMimeType.equals(specifiedMimeType) &&
-            !(trueMimeType.contains("zip") && specifiedMimeType.contains("zip"))) {
-            throw new StorageException("True mime type is different from specified one, aborting.");
-        }
-
-        return trueMimeType;
+        return document.getAnalysis();
     }
 
     @Override
@@ -168,26 +84,34 @@ public class IndexingServiceImpl implements IndexingService {
             throw new IllegalArgumentException("fileName is required (server filename).");
         }
 
-        var builder = MalwareAnalysisIndex.builder()
-                .id(analysis.getFileName())
-                .fileName(analysis.getFileName())
-                .analystFullName(analysis.getAnalystFullName())
-                .securityOrganization(analysis.getSecurityOrganization())
-                .malwareName(analysis.getMalwareName())
-                .threatClassification(
-                        analysis.getThreatClassification() != null ? analysis.getThreatClassification().name() : null
-                )
-                .sampleHash(analysis.getSampleHash());
-
-        if ("SR".equals(detectLanguage(analysis.getBehaviorDescription()))) {
-            builder.behaviorDescriptionSr(analysis.getBehaviorDescription());
-        } else {
-            builder.behaviorDescriptionEn(analysis.getBehaviorDescription());
-        }
-
-        var indexDoc = builder.build();
-        malwareAnalysisIndexRepository.save(indexDoc);
+        malwareAnalysisIndexRepository.save(ingestStages.toAnalysisIndex(analysis));
+        syncPassageClassification(analysis);
+        indexGeneration.advance();
 
         return analysis;
     }
+
+    // Passages carry the report's classification for filtered kNN; a stale value only skews hybrid
+    // filtering, so a failure here is logged instead of failing the confirmation
+    private void syncPassageClassification(MalwareAnalysis analysis) {
+        var classification = analysis.getThreatClassification();
+        String script = classification != null
+                ? "ctx._source.threatClassification = params.classification"
+                : "ctx._source.remove('threatClassification')";
+        Map<String, JsonData> scriptParams = classification != null
+                ? Map.of("classification", JsonData.of(classification.name()))
+                : Map.of();
+        try {
+            elasticsearchClient.updateByQuery(u -> u
+                    .index("report_passages")
+                    .query(q -> q.term(t -> t.field("serverFilename").value(analysis.getFileName())))
+                    .script(s -> s.inline(i -> i
+                            .source(script)
+                            .params(scriptParams)))
+                    .conflicts(Conflicts.Proceed));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not update passage classification for {}: {}", analysis.getFileName(),
+                    e.getMessage());
+        }
+    }
 }
\ No newline at end of file
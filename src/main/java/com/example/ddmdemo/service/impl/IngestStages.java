@@ -0,0 +1,429 @@
+package com.example.ddmdemo.service.impl;
+
+import com.example.ddmdemo.exceptionhandling.exception.LoadingException;
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
+import com.example.ddmdemo.indexmodel.DummyIndex;
+import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import com.example.ddmdemo.indexmodel.ReportPassageIndex;
+import com.example.ddmdemo.indexrepository.DummyIndexRepository;
+import com.example.ddmdemo.indexrepository.ElasticsearchBulkWriter;
+import com.example.ddmdemo.indexrepository.IndexGeneration;
+import com.example.ddmdemo.indexrepository.ReportPassageIndexRepository;
+import com.example.ddmdemo.model.DummyTable;
+import com.example.ddmdemo.model.IngestDocument;
+import com.example.ddmdemo.model.IngestDraft;
+import com.example.ddmdemo.model.MalwareAnalysis;
+import com.example.ddmdemo.model.ReportDigest;
+import com.example.ddmdemo.model.TextChunk;
+import com.example.ddmdemo.respository.DummyRepository;
+import com.example.ddmdemo.respository.ReportDigestRepository;
+import com.example.ddmdemo.service.interfaces.EmbeddingService;
+import com.example.ddmdemo.service.interfaces.FileService;
+import com.example.ddmdemo.service.interfaces.LanguageDetectionService;
+import com.example.ddmdemo.service.interfaces.SimilarReportService;
+import com.example.ddmdemo.util.IngestDraftCache;
+import com.example.ddmdemo.util.MalwareAnalysisParser;
+import com.example.ddmdemo.util.NearDuplicateIndex;
+import com.example.ddmdemo.util.PdfTextExtractor;
+import com.example.ddmdemo.util.SpooledUpload;
+import com.example.ddmdemo.util.TextChunker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+import org.apache.tika.io.TikaInputStream;
+import org.springframework.stereotype.Component;
+
+// Individual ingest steps, shared by the single-upload flow and the staged batch pipeline.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestStages {
+
+    private final DummyIndexRepository dummyIndexRepository;
+
+    private final DummyRepository dummyRepository;
+
+    private final FileService fileService;
+
+    private final LanguageDetectionService languageDetectionService;
+
+    private final Tika tika;
+
+    private final MalwareAnalysisParser malwareAnalysisParser;
+
+    private final PdfTextExtractor pdfTextExtractor;
+
+    private final ReportDigestRepository reportDigestRepository;
+
+    private final ElasticsearchBulkWriter bulkWriter;
+
+    private final IngestDraftCache ingestDraftCache;
+
+    private final EmbeddingService embeddingService;
+
+    private final TextChunker textChunker;
+
+    private final ReportPassageIndexRepository reportPassageIndexRepository;
+
+    private final SimilarReportService similarReportService;
+
+    private final NearDuplicateIndex nearDuplicateIndex;
+
+    private final IndexGeneration indexGeneration;
+
+    // 1) Extract text
+    public IngestDocument extract(SpooledUpload upload) {
+        var document = new IngestDocument();
+        document.setUpload(upload);
+        document.setTitle(Objects.requireNonNull(upload.getOriginalFilename()).split("\\.")[0]);
+
+        var knownReport = reportDigestRepository.findById(upload.getSha256());
+        if (knownReport.isPresent()) {
+            log.info("Report '{}' was already ingested as {}, reusing previous results",
+                document.getTitle(), knownReport.get().getServerFilename());
+            restoreFromDigest(document, knownReport.get());
+            return document;
+        }
+
+        // Pages are parsed as soon as they come out of the extractor
+        var parseSession = malwareAnalysisParser.newSession();
+        document.setContent(extractDocumentContent(upload, parseSession));
+        document.setAnalysis(parseSession.finish());
+        return document;
+    }
+
+    // 2) Detect language (malware analysis fields were parsed during extraction)
+    public IngestDocument analyze(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return document;
+        }
+
+        var analysis = document.getAnalysis();
+        log.info("Parsed MalwareAnalysis from report '{}': {}", document.getTitle(), analysis);
+
+        document.setLanguage(languageDetectionService.detectLanguage(document.getContent()));
+        document.setBehaviorLanguage(
+            languageDetectionService.detectLanguage(analysis.getBehaviorDescription()));
+        return document;
+    }
+
+    // 3) MinHash the content and look up reports it nearly duplicates
+    public IngestDocument fingerprint(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return document;
+        }
+
+        var signature = nearDuplicateIndex.signature(document.getContent());
+        document.setSignature(signature);
+        if (signature != null) {
+            var nearDuplicates = nearDuplicateIndex.findCandidates(signature);
+            if (!nearDuplicates.isEmpty()) {
+                log.info("Report '{}' nearly duplicates {}", document.getTitle(), nearDuplicates);
+            }
+            document.getAnalysis().setNearDuplicates(nearDuplicates);
+        }
+        return document;
+    }
+
+    // 4) Split content and behavior description into overlapping passages
+    public IngestDocument chunk(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return document;
+        }
+
+        var passages = new ArrayList<>(textChunker.chunk("CONTENT", document.getContent()));
+        passages.addAll(textChunker.chunk("BEHAVIOR", document.getAnalysis().getBehaviorDescription()));
+        document.setPassages(passages);
+        return document;
+    }
+
+    // 5) Store file
+    public IngestDocument store(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return document;
+        }
+
+        document.setMimeType(detectMimeType(document.getUpload()));
+
+        // Content-addressed, so identical reports map onto the same object
+        var serverFilename = fileService.store(document.getUpload(), document.getUpload().getSha256());
+        document.setServerFilename(serverFilename);
+        document.getAnalysis().setFileName(serverFilename);
+        return document;
+    }
+
+    // 6) Vectorize
+    public IngestDocument embed(IngestDocument document) {
+        // Failures are logged per vector, the document is indexed without them
+        return embedAsync(document).join();
+    }
+
+    // 6) Vectorize without holding a thread; title and passages share batches with other requests
+    public CompletableFuture<IngestDocument> embedAsync(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return CompletableFuture.completedFuture(document);
+        }
+
+        var title = embeddingService.embedAsync(document.getTitle()).handle((vector, error) -> {
+            if (error != null) {
+                log.error("Could not calculate vector representation for document: {}",
+                    document.getServerFilename(), error);
+            } else {
+                document.setVector(vector);
+            }
+            return document;
+        });
+
+        var passageVectors = document.getPassages().stream()
+            .map(passage -> embeddingService.embedAsync(passage.text()))
+            .toList();
+        var passages = CompletableFuture.allOf(passageVectors.toArray(CompletableFuture[]::new))
+            .handle((ignored, error) -> {
+                if (error != null) {
+                    log.error("Could not calculate passage vectors for document: {}",
+                        document.getServerFilename(), error);
+                } else {
+                    document.setPassageVectors(passageVectors.stream().map(CompletableFuture::join).toList());
+                }
+                return document;
+            });
+
+        return title.thenCombine(passages, (withTitle, withPassages) -> document);
+    }
+
+    // 7) Save entity + index
+    public IngestDocument index(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return document;
+        }
+
+        var newIndex = persist(document);
+        dummyIndexRepository.save(newIndex);
+
+        var passages = toPassageIndices(document, newIndex.getDatabaseId());
+        if (!passages.isEmpty()) {
+            reportPassageIndexRepository.saveAll(passages);
+        }
+        indexGeneration.advance();
+
+        rememberDigest(document, newIndex.getDatabaseId());
+        rememberDraft(document);
+        rememberSimilarity(document);
+        return document;
+    }
+
+    // 7) Save entity, then leave the index requests to the bulk writer
+    public CompletableFuture<IngestDocument> indexBuffered(IngestDocument document) {
+        if (document.isDuplicate()) {
+            return CompletableFuture.completedFuture(document);
+        }
+
+        var newIndex = persist(document);
+        var writes = new ArrayList<CompletableFuture<String>>();
+        writes.add(bulkWriter.index(newIndex));
+        for (var passage : toPassageIndices(document, newIndex.getDatabaseId())) {
+            writes.add(bulkWriter.index(passage));
+        }
+
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            rememberDigest(document, newIndex.getDatabaseId());
+            rememberDraft(document);
+            rememberSimilarity(document);
+            return document;
+        });
+    }
+
+    public MalwareAnalysisIndex toAnalysisIndex(MalwareAnalysis analysis) {
+        var builder = MalwareAnalysisIndex.builder()
+                .id(analysis.getFileName())
+                .fileName(analysis.getFileName())
+                .analystFullName(analysis.getAnalystFullName())
+                .securityOrganization(analysis.getSecurityOrganization())
+                .malwareName(analysis.getMalwareName())
+                .threatClassification(
+                        analysis.getThreatClassification() != null ? analysis.getThreatClassification().name() : null
+                )
+                .sampleHash(analysis.getSampleHash());
+
+        // Only re-detect when the analyst changed the description since indexDocument
+        var behaviorLanguage = ingestDraftCache.get(analysis.getFileName())
+            .filter(draft -> Objects.equals(draft.behaviorDescription(), analysis.getBehaviorDescription()))
+            .map(IngestDraft::behaviorLanguage)
+            .orElseGet(() -> languageDetectionService.detectLanguage(analysis.getBehaviorDescription()));
+
+        if ("SR".equals(behaviorLanguage)) {
+            builder.behaviorDescriptionSr(analysis.getBehaviorDescription());
+        } else {
+            builder.behaviorDescriptionEn(analysis.getBehaviorDescription());
+        }
+
+        return builder.build();
+    }
+
+    private DummyIndex persist(IngestDocument document) {
+        var newEntity = new DummyTable();
+        newEntity.setTitle(document.getTitle());
+        newEntity.setContent(document.getContent());
+        newEntity.setServerFilename(document.getServerFilename());
+        newEntity.setMimeType(document.getMimeType());
+        var savedEntity = dummyRepository.save(newEntity);
+
+        var newIndex = new DummyIndex();
+        newIndex.setTitle(document.getTitle());
+        // Keep SR/EN logic
+        if (document.getLanguage().equals("SR")) {
+            newIndex.setContentSr(document.getContent());
+        } else {
+            newIndex.setContentEn(document.getContent());
+        }
+        newIndex.setServerFilename(document.getServerFilename());
+        newIndex.setVectorizedContent(document.getVector());
+        newIndex.setDatabaseId(savedEntity.getId());
+        return newIndex;
+    }
+
+    // Ids derive from the content-addressed filename, so re-indexing a report overwrites its passages
+    private List<ReportPassageIndex> toPassageIndices(IngestDocument document, Integer databaseId) {
+        var vectors = document.getPassageVectors();
+        if (vectors == null) {
+            return List.of();
+        }
+
+        var passages = document.getPassages();
+        var classification = document.getAnalysis().getThreatClassification();
+        var indices = new ArrayList<ReportPassageIndex>(passages.size());
+        for (int i = 0; i < passages.size(); i++) {
+            TextChunk passage = passages.get(i);
+            indices.add(ReportPassageIndex.builder()
+                .id(document.getServerFilename() + "-" + passage.source().toLowerCase() + "-" + passage.index())
+                .serverFilename(document.getServerFilename())
+                .databaseId(databaseId)
+                .source(passage.source())
+                .threatClassification(classification != null ? classification.name() : null)
+                .chunkIndex(passage.index())
+                .startOffset(passage.startOffset())
+                .endOffset(passage.endOffset())
+                .text(passage.text())
+                .vector(vectors.get(i))
+                .build());
+        }
+        return indices;
+    }
+
+    private void rememberSimilarity(IngestDocument document) {
+        float[] behaviorVector = null;
+        var vectors = document.getPassageVectors();
+        if (vectors != null) {
+            // Summed behavior passages; the similarity index normalizes them to their mean direction
+            var passages = document.getPassages();
+            for (int i = 0; i < passages.size(); i++) {
+                if ("BEHAVIOR".equals(passages.get(i).source())) {
+                    if (behaviorVector == null) {
+                        behaviorVector = new float[vectors.get(i).length];
+                    }
+                    for (int j = 0; j < behaviorVector.length; j++) {
+                        behaviorVector[j] += vectors.get(i)[j];
+                    }
+                }
+            }
+        }
+        similarReportService.add(document.getServerFilename(), document.getVector(), behaviorVector);
+
+        if (document.getSignature() != null) {
+            nearDuplicateIndex.add(document.getServerFilename(), document.getSignature());
+        }
+    }
+
+    private void rememberDraft(IngestDocument document) {
+        ingestDraftCache.put(new IngestDraft(
+            document.getServerFilename(),
+            document.getAnalysis().getBehaviorDescription(),
+            document.getBehaviorLanguage()
+        ));
+    }
+
+    private void restoreFromDigest(IngestDocument document, ReportDigest digest) {
+        document.setDuplicate(true);
+        document.setServerFilename(digest.getServerFilename());
+        document.setVector(decodeVector(digest.getEmbedding()));
+        document.setAnalysis(MalwareAnalysis.builder()
+            .analystFullName(digest.getAnalystFullName())
+            .securityOrganization(digest.getSecurityOrganization())
+            .malwareName(digest.getMalwareName())
+            .behaviorDescription(digest.getBehaviorDescription())
+            .threatClassification(digest.getThreatClassification())
+            .sampleHash(digest.getSampleHash())
+            .fileName(digest.getServerFilename())
+            .build());
+    }
+
+    private void rememberDigest(IngestDocument document, Integer databaseId) {
+        var analysis = document.getAnalysis();
+        reportDigestRepository.save(new ReportDigest(
+            document.getUpload().getSha256(),
+            document.getServerFilename(),
+            databaseId,
+            analysis.getAnalystFullName(),
+            analysis.getSecurityOrganization(),
+            analysis.getMalwareName(),
+            analysis.getBehaviorDescription(),
+            analysis.getThreatClassification(),
+            analysis.getSampleHash(),
+            encodeVector(document.getVector())
+        ));
+    }
+
+    private static byte[] encodeVector(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        var buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] decodeVector(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        var vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private String extractDocumentContent(SpooledUpload pdfFile, MalwareAnalysisParser.Session parseSession) {
+        if (pdfFile == null || pdfFile.isEmpty()) {
+            throw new LoadingException("PDF file is missing or empty.");
+        }
+
+        return pdfTextExtractor.extract(pdfFile.getPath(), parseSession::feed);
+    }
+
+    private String detectMimeType(SpooledUpload file) {
+        String trueMimeType;
+        String specifiedMimeType;
+        try (var content = TikaInputStream.get(file.getPath())) {
+            trueMimeType = tika.detect(content);
+            specifiedMimeType =
+                Files.probeContentType(Path.of(Objects.requireNonNull(file.getOriginalFilename())));
+        } catch (IOException e) {
+            throw new StorageException("Failed to detect mime type for file.");
+        }
+
+        if (!trueMimeType.equals(specifiedMimeType) &&
+            !(trueMimeType.contains("zip") && specifiedMimeType.contains("zip"))) {
+            throw new StorageException("True mime type is different from specified one, aborting.");
+        }
+
+        return trueMimeType;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ddmdemo.service.impl;
+
+import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
+import com.example.ddmdemo.service.interfaces.LanguageDetectionService;
+import java.io.IOException;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.langdetect.optimaize.OptimaizeLangDetector;
+import org.apache.tika.language.detect.LanguageDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class LanguageDetectionServiceImpl implements LanguageDetectionService {
+
+    // Optimaize detectors buffer the text they are fed, so every thread gets its own instance
+    private final ThreadLocal<LanguageDetector> detectors = ThreadLocal.withInitial(this::newDetector);
+
+    @Value("${language-detection.languages:sr,hr,en}")
+    private Set<String> languages;
+
+    @Value("${language-detection.sample-chars:2000}")
+    private int sampleChars;
+
+    @Value("${language-detection.sample-windows:4}")
+    private int sampleWindows;
+
+    @Override
+    public String detectLanguage(String text) {
+        if (text == null || text.isBlank()) {
+            return "EN";
+        }
+
+        var detectedLanguage = detectors.get().detect(sample(text)).getLanguage().toUpperCase();
+        if (detectedLanguage.equals("HR")) {
+            detectedLanguage = "SR";
+        }
+
+        return detectedLanguage;
+    }
+
+    // Evenly spaced windows over the whole text keep detection time independent of report size
+    private String sample(String text) {
+        if (text.length() <= sampleChars) {
+            return text;
+        }
+        if (sampleWindows < 2) {
+            return text.substring(0, sampleChars);
+        }
+
+        int window = sampleChars / sampleWindows;
+        int stride = (text.length() - window) / (sampleWindows - 1);
+        var sample = new StringBuilder(sampleChars + sampleWindows);
+        for (int i = 0; i < sampleWindows; i++) {
+            int start = i * stride;
+            sample.append(text, start, start + window).append(' ');
+        }
+        return sample.toString();
+    }
+
+    private LanguageDetector newDetector() {
+        try {
+            log.debug("Loading language profiles {} for {}", languages, Thread.currentThread().getName());
+            return new OptimaizeLangDetector().loadModels(languages);
+        } catch (IOException e) {
+            throw new NotFoundException("Error while loading language models.");
+        }
+    }
+}
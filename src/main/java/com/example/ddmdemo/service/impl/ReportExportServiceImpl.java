@@ -0,0 +1,284 @@
+package com.example.ddmdemo.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.example.ddmdemo.dto.ReportExportQueryDTO;
+import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
+import com.example.ddmdemo.exceptionhandling.exception.ServiceBusyException;
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
+import com.example.ddmdemo.indexrepository.PointInTimeRegistry;
+import com.example.ddmdemo.service.interfaces.ReportExportService;
+import com.example.ddmdemo.util.MalwareAnalysisParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Exports read one point in time in parallel slices, each paging with search_after. Pages are handed to the
+// writing thread through a bounded queue, so memory stays at a few pages however many hits match. Only
+// max-concurrent exports run at once and the reader pool has a thread for every slice of each of them, so a
+// slow download never holds up the readers of another export.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportExportServiceImpl implements ReportExportService {
+
+    private static final List<String> EXPORTABLE_FIELDS = List.of("fileName", "analystFullName",
+            "securityOrganization", "malwareName", "threatClassification", "sampleHash", "behaviorDescriptionSr",
+            "behaviorDescriptionEn");
+
+    private static final List<String> DEFAULT_FIELDS = List.of("fileName", "malwareName", "securityOrganization",
+            "analystFullName", "threatClassification", "sampleHash");
+
+    // Index order; nothing is scored in a way the export would use
+    private static final List<Map<String, Object>> SHARD_DOC_ORDER =
+            List.of(Map.of("_shard_doc", Map.of("order", "asc")));
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final PointInTimeRegistry pointInTimeRegistry;
+
+    private final ReportQueryTemplates reportQueryTemplates;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${search.export.slices:4}")
+    private int slices;
+
+    @Value("${search.export.page-size:1000}")
+    private int pageSize;
+
+    @Value("${search.export.max-concurrent:2}")
+    private int maxConcurrentExports;
+
+    // Readers wait for the client while it downloads, so export readers outlive a cursor's keep-alive
+    @Value("${search.export.keep-alive-seconds:600}")
+    private long keepAliveSeconds;
+
+    // How long the writer waits for the next page before it gives up on the export
+    @Value("${search.export.page-timeout-seconds:120}")
+    private long pageTimeoutSeconds;
+
+    private Semaphore runningExports;
+
+    private ExecutorService readers;
+
+    @PostConstruct
+    void startReaders() {
+        runningExports = new Semaphore(maxConcurrentExports);
+        var counter = new AtomicInteger();
+        readers = Executors.newFixedThreadPool(maxConcurrentExports * slices, runnable -> {
+            var thread = new Thread(runnable, "report-export-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopReaders() {
+        readers.shutdownNow();
+    }
+
+    @Override
+    public StreamingResponseBody export(ReportExportQueryDTO query) {
+        boolean csv = switch (query.format() == null ? "ndjson" : query.format().toLowerCase(Locale.ROOT)) {
+            case "csv" -> true;
+            case "ndjson" -> false;
+            default -> throw new MalformedQueryException("format must be ndjson or csv.");
+        };
+
+        List<String> fields = query.fields() == null || query.fields().isEmpty() ? DEFAULT_FIELDS : query.fields();
+        for (String field : fields) {
+            if (!EXPORTABLE_FIELDS.contains(field)) {
+                throw new MalformedQueryException("Field " + field + " cannot be exported.");
+            }
+        }
+
+        Map<String, Object> params = reportQueryTemplates.params(0, pageSize);
+        params.put("source", Map.of("filter", Map.of("includes", fields)));
+        params.put("sorted", true);
+        params.put("sort", SHARD_DOC_ORDER);
+        // No highlight parameter, so the templates leave highlighting out
+        if (query.classification() != null && !query.classification().isBlank()) {
+            var classification = MalwareAnalysisParser.parseClassification(query.classification())
+                    .orElseThrow(() -> new MalformedQueryException(
+                            "Unknown threat classification " + query.classification() + "."));
+            reportQueryTemplates.addTermFilter(params, "threatClassification", classification.name());
+        }
+        if (query.organization() != null && !query.organization().isBlank()) {
+            reportQueryTemplates.addTermFilter(params, "securityOrganization.keyword", query.organization().trim());
+        }
+        String templateId = query.q() == null || query.q().isBlank()
+                ? reportQueryTemplates.matchAll()
+                : reportQueryTemplates.resolve(query.q(), params).templateId();
+
+        // Taken before the response starts, so a refused export still gets a proper 503
+        if (!runningExports.tryAcquire()) {
+            throw new ServiceBusyException("Too many exports are running, try again later.");
+        }
+        return out -> {
+            try {
+                write(templateId, params, fields, csv, out);
+            } finally {
+                runningExports.release();
+            }
+        };
+    }
+
+    private void write(String templateId, Map<String, Object> params, List<String> fields, boolean csv,
+                       OutputStream out) throws IOException {
+        // Slices report the newest id Elasticsearch handed back, which is the one to renew and close
+        var pitId = new AtomicReference<>(pointInTimeRegistry.open("malware_analysis", keepAliveSeconds));
+        BlockingQueue<SlicePage> pages = new ArrayBlockingQueue<>(slices * 2);
+        var readerFutures = new ArrayList<Future<?>>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            int sliceId = slice;
+            readerFutures.add(readers.submit(() -> readSlice(templateId, params, pitId, sliceId, pages)));
+        }
+
+        long rows = 0;
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (csv) {
+                writeCsvRow(writer, fields);
+            }
+
+            int finished = 0;
+            while (finished < slices) {
+                var page = pages.poll(pageTimeoutSeconds, TimeUnit.SECONDS);
+                if (page == null) {
+                    throw new StorageException("Report export timed out waiting for Elasticsearch.");
+                }
+                if (page.error() != null) {
+                    throw new StorageException("Report export failed: " + page.error().getMessage());
+                }
+                if (page.rows() == null) {
+                    finished++;
+                    continue;
+                }
+                for (var row : page.rows()) {
+                    if (csv) {
+                        writeCsvRow(writer, fields.stream().map(row::get).toList());
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                }
+                rows += page.rows().size();
+                // Hand each page to the client right away instead of letting the response buffer it
+                writer.flush();
+                // Readers blocked behind a slow client search nothing, so the registry hears from the writer
+                pointInTimeRegistry.renew(pitId.get());
+            }
+            // Without a single page the CSV header is still sitting in the buffer
+            writer.flush();
+            log.info("Exported {} report(s) as {}", rows, csv ? "CSV" : "NDJSON");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Report export was interrupted.");
+        } finally {
+            // Also stops the readers when the client went away mid-download
+            readerFutures.forEach(future -> future.cancel(true));
+            pointInTimeRegistry.close(pitId.get());
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void readSlice(String templateId, Map<String, Object> baseParams, AtomicReference<String> pitId,
+                           int slice, BlockingQueue<SlicePage> pages) {
+        try {
+            List<Object> searchAfter = null;
+            String currentPitId = pitId.get();
+            while (!Thread.currentThread().isInterrupted()) {
+                var params = new HashMap<>(baseParams);
+                params.put("pit", Map.of("id", currentPitId, "keepAlive", keepAliveSeconds + "s"));
+                if (slices > 1) {
+                    params.put("slice", Map.of("id", slice, "max", slices));
+                }
+                if (searchAfter != null) {
+                    params.put("searchAfter", Map.of("values", searchAfter));
+                }
+
+                var response = elasticsearchClient.searchTemplate(r -> r
+                        .id(templateId)
+                        .params(ReportQueryTemplates.toJson(params)), Map.class);
+                List<Hit<Map>> hits = response.hits().hits();
+                if (response.pitId() != null) {
+                    pointInTimeRegistry.touch(currentPitId, response.pitId(), keepAliveSeconds);
+                    pitId.set(response.pitId());
+                    currentPitId = response.pitId();
+                }
+                if (hits.isEmpty()) {
+                    break;
+                }
+
+                List<Map<String, Object>> rows = new ArrayList<>(hits.size());
+                for (Hit<Map> hit : hits) {
+                    rows.add(hit.source());
+                }
+                pages.put(new SlicePage(rows, null));
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort().stream().map(FieldValue::_get).toList();
+            }
+            pages.put(new SlicePage(null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Export slice {} failed", slice, e);
+            try {
+                pages.put(new SlicePage(null, e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            var value = values.get(i) == null ? "" : values.get(i).toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                    || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // rows == null and error == null marks the end of a slice
+    private record SlicePage(List<Map<String, Object>> rows, Throwable error) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.ddmdemo.service.impl;
+
+import co.elastic.clients.json.JsonData;
+import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
+import com.example.ddmdemo.indexrepository.SearchTemplateRegistry;
+import com.example.ddmdemo.model.ReportProjection;
+import com.example.ddmdemo.util.MalwareAnalysisParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// Routes a single-bar query to one of the stored malware_analysis search templates and fills in its parameters.
+// Searches, cursors and exports all go through here, so they share the same query shapes.
+@Component
+@RequiredArgsConstructor
+public class ReportQueryTemplates {
+
+    private static final List<String> NAME_FIELDS = List.of("analystFullName", "securityOrganization", "malwareName");
+
+    private static final List<String> DESCRIPTION_FIELDS = List.of("behaviorDescriptionSr", "behaviorDescriptionEn");
+
+    private final SearchTemplateRegistry searchTemplateRegistry;
+
+    private final MeterRegistry meterRegistry;
+
+    // Parameters every template expects; callers add sorting, projection, slicing etc. on top
+    public Map<String, Object> params(long from, int size) {
+        var params = new HashMap<String, Object>();
+        params.put("from", from);
+        params.put("size", size);
+        params.put("filters", new ArrayList<Map<String, Object>>());
+        return params;
+    }
+
+    // Non-scoring clause, cached by Elasticsearch independently of the query text
+    @SuppressWarnings("unchecked")
+    public void addTermFilter(Map<String, Object> params, String field, String value) {
+        ((List<Map<String, Object>>) params.get("filters")).add(Map.of("term", Map.of(field, value)));
+    }
+
+    // For requests that bypass ElasticsearchOperations and go to the low-level client
+    public static Map<String, JsonData> toJson(Map<String, Object> params) {
+        return params.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> JsonData.of(e.getValue())));
+    }
+
+    public String matchAll() {
+        return searchTemplateRegistry.templateId("malware-analysis-all");
+    }
+
+    // Only the template id and its parameters go over the wire; the query shapes live in Elasticsearch
+    public Route resolve(String q, Map<String, Object> params) {
+        if (q == null) {
+            throw new MalformedQueryException("Query is null.");
+        }
+
+        String raw = q.trim();
+        if (raw.isEmpty()) {
+            throw new MalformedQueryException("Query is empty.");
+        }
+
+        boolean isPhrase = raw.length() >= 2 && raw.startsWith("'") && raw.endsWith("'");
+
+        String phraseValue = isPhrase ? raw.substring(1, raw.length() - 1).trim() : raw;
+        if (phraseValue.isEmpty()) {
+            throw new MalformedQueryException("Phrase query is empty.");
+        }
+
+        var intent = classify(phraseValue, isPhrase);
+        meterRegistry.counter("search.query.intent", "intent", intent.name()).increment();
+
+        switch (intent) {
+            case HASH -> {
+                // The sample hash as written in reports, or the report's own digest
+                params.put("hashes", Stream.of(phraseValue, phraseValue.toLowerCase(Locale.ROOT),
+                        phraseValue.toUpperCase(Locale.ROOT)).distinct().toList());
+                params.put("reportId", phraseValue.toLowerCase(Locale.ROOT) + ".pdf");
+            }
+            case CLASSIFICATION -> params.put("classification",
+                    MalwareAnalysisParser.parseClassification(phraseValue).orElseThrow().name());
+            case PHRASE, FREE_TEXT -> params.put("text", phraseValue);
+        }
+        return new Route(searchTemplateRegistry.templateId("malware-analysis-" + intent.templateName), intent);
+    }
+
+    // Highlights only the fields the route actually queries, and only when the projection loads _source
+    // anyway. Short fields come back whole, only the descriptions are cut into fragments.
+    public void project(Map<String, Object> params, ReportProjection projection, QueryIntent intent) {
+        if (projection.getSourceFilter() != null) {
+            params.put("source", Map.of("filter", projection.getSourceFilter()));
+        }
+        if (!projection.getDocValueFields().isEmpty()) {
+            params.put("docvalueFields", Map.of("fields", projection.getDocValueFields()));
+        }
+
+        if (!projection.loadsSource()) {
+            return;
+        }
+
+        var fields = new LinkedHashMap<String, Object>();
+        for (String field : intent.matchedFields) {
+            fields.put(field, DESCRIPTION_FIELDS.contains(field)
+                    ? Map.of("fragment_size", 180, "number_of_fragments", 3)
+                    : Map.of("number_of_fragments", 0));
+        }
+        params.put("highlight", Map.of("spec", Map.of(
+                "pre_tags", List.of("<em>"),
+                "post_tags", List.of("</em>"),
+                "require_field_match", true,
+                "fields", fields)));
+    }
+
+    // Most traffic is IOC lookups, so the cheap exact routes are tried before any scored plan
+    static QueryIntent classify(String value, boolean isPhrase) {
+        if (MalwareAnalysisParser.isHash(value)) {
+            return QueryIntent.HASH;
+        }
+        if (MalwareAnalysisParser.parseClassification(value).isPresent()) {
+            return QueryIntent.CLASSIFICATION;
+        }
+        return isPhrase ? QueryIntent.PHRASE : QueryIntent.FREE_TEXT;
+    }
+
+    public record Route(String templateId, QueryIntent intent) {
+    }
+
+    public enum QueryIntent {
+        HASH("hash", List.of("sampleHash")),
+        CLASSIFICATION("classification", List.of("threatClassification")),
+        PHRASE("phrase", concat(NAME_FIELDS, DESCRIPTION_FIELDS)),
+        FREE_TEXT("free-text", concat(NAME_FIELDS, DESCRIPTION_FIELDS));
+
+        private final String templateName;
+
+        private final List<String> matchedFields;
+
+        QueryIntent(String templateName, List<String> matchedFields) {
+            this.templateName = templateName;
+            this.matchedFields = matchedFields;
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+}
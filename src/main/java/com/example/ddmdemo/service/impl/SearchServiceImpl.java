@@ -1,189 +1,633 @@
 package com.example.ddmdemo.service.impl;
 
-import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
-import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.KnnQuery;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.example.ddmdemo.dto.FacetCountDTO;
+import com.example.ddmdemo.dto.FacetedReportPageDTO;
+import com.example.ddmdemo.dto.HybridReportHitDTO;
+import com.example.ddmdemo.dto.PassageHitDTO;
+import com.example.ddmdemo.dto.ReportCursorPageDTO;
 import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
+import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
 import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import com.example.ddmdemo.indexmodel.ReportPassageIndex;
+import com.example.ddmdemo.indexrepository.IndexGeneration;
+import com.example.ddmdemo.indexrepository.PointInTimeRegistry;
+import com.example.ddmdemo.model.ReportProjection;
+import com.example.ddmdemo.service.interfaces.EmbeddingService;
 import com.example.ddmdemo.service.interfaces.SearchService;
+import com.example.ddmdemo.util.MalwareAnalysisParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.elasticsearch.common.unit.Fuzziness;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
 import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHitSupport;
 import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.SearchPage;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
-import org.springframework.data.elasticsearch.core.query.highlight.Highlight;
-import org.springframework.data.elasticsearch.core.query.highlight.HighlightField;
-import org.springframework.data.elasticsearch.core.query.highlight.HighlightParameters;
-import org.springframework.data.elasticsearch.core.query.HighlightQuery;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SearchServiceImpl implements SearchService {
 
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final List<String> FACETS =
+            List.of("malwareName", "securityOrganization", "analystFullName", "threatClassification");
+
+    // _shard_doc is the point-in-time's own tiebreaker, unique per hit and free to sort on
+    private static final List<Map<String, Object>> CURSOR_SORT = List.of(
+            Map.of("_score", Map.of("order", "desc")),
+            Map.of("_shard_doc", Map.of("order", "asc")));
+
     private final ElasticsearchOperations elasticsearchTemplate;
 
-    public Page<MalwareAnalysisIndex> searchReports(String q, Pageable pageable) {
+    private final ReportQueryTemplates reportQueryTemplates;
+
+    private final EmbeddingService embeddingService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final IndexGeneration indexGeneration;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final PointInTimeRegistry pointInTimeRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${search.passages.max-k:100}")
+    private int maxPassageK;
+
+    @Value("${search.passages.candidates-per-hit:10}")
+    private int candidatesPerHit;
+
+    @Value("${search.cursor.max-size:1000}")
+    private int maxCursorPageSize;
+
+    @Value("${search.cache.max-entries:10000}")
+    private long maxCachedResults;
+
+    @Value("${search.cache.ttl-seconds:30}")
+    private long cachedResultTtlSeconds;
+
+    @Value("${search.facets.max-size:100}")
+    private int maxFacetSize;
+
+    @Value("${search.hybrid.max-size:100}")
+    private int maxHybridSize;
+
+    @Value("${search.hybrid.window:50}")
+    private int hybridWindow;
+
+    @Value("${search.hybrid.rank-constant:60}")
+    private int rankConstant;
+
+    @Value("${search.hybrid.passages-per-report:3}")
+    private int passagesPerReport;
+
+    @Value("${search.hybrid.vector-timeout-ms:2000}")
+    private long vectorTimeoutMs;
+
+    @Value("${search.hybrid.threads:8}")
+    private int hybridThreads;
+
+    // Vector legs waiting for a thread; beyond that hybrid searches answer with the lexical ranking alone
+    @Value("${search.hybrid.queue-capacity:32}")
+    private int hybridQueueCapacity;
+
+    private ExecutorService vectorSearches;
+
+    private Cache<ResultKey, Page<MalwareAnalysisIndex>> results;
+
+    private Cache<FacetKey, Map<String, List<FacetCountDTO>>> facetTotals;
+
+    @PostConstruct
+    void buildCache() {
+        results = Caffeine.newBuilder()
+                .maximumSize(maxCachedResults)
+                .expireAfterWrite(Duration.ofSeconds(cachedResultTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "search.results");
+
+        facetTotals = Caffeine.newBuilder()
+                .maximumSize(64)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, facetTotals, "search.facet-totals");
+    }
+
+    @PostConstruct
+    void startVectorSearches() {
+        var counter = new AtomicInteger();
+        vectorSearches = new ThreadPoolExecutor(hybridThreads, hybridThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hybridQueueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "hybrid-search-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stopVectorSearches() {
+        vectorSearches.shutdownNow();
+    }
+
+    // Entries of older generations are never looked up again and age out by size or TTL. The route is resolved
+    // before the lookup, so search.query.intent counts cached queries too.
+    public Page<MalwareAnalysisIndex> searchReports(String q, Pageable pageable, ReportProjection projection) {
         if (q == null || q.isBlank()) {
             return Page.empty(pageable);
         }
 
-        String queryText = q.trim();
+        Map<String, Object> params = pagingParams(pageable);
+        var route = reportQueryTemplates.resolve(q.trim(), params);
+        var key = new ResultKey(WHITESPACE.matcher(q.trim()).replaceAll(" ").toLowerCase(Locale.ROOT),
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString(), projection,
+                indexGeneration.current());
+        return results.get(key, ignored -> runReportSearch(route, params, pageable, projection));
+    }
 
-        NativeQuery searchQuery = new NativeQueryBuilder()
-                .withQuery(buildSingleBarQuery(queryText))
-                .withHighlightQuery(buildHighlightQuery())
-                .withPageable(pageable)
-                .build();
+    private Page<MalwareAnalysisIndex> runReportSearch(ReportQueryTemplates.Route route, Map<String, Object> params,
+                                                       Pageable pageable, ReportProjection projection) {
+        reportQueryTemplates.project(params, projection, route.intent());
 
-        return runMalwareQuery(searchQuery);
+        return toPage(runTemplate(route.templateId(), params), pageable);
     }
 
-    private HighlightQuery buildHighlightQuery() {
-        HighlightParameters params = HighlightParameters.builder()
-                .withPreTags("<em>")
-                .withPostTags("</em>")
-                .withFragmentSize(180)
-                .withNumberOfFragments(3)
-                .build();
+    // Hits and facet counts from the same request
+    public FacetedReportPageDTO searchReportsFaceted(String q, Pageable pageable, ReportProjection projection,
+                                                     int facetSize) {
+        checkFacetSize(facetSize);
+        if (q == null || q.isBlank()) {
+            return new FacetedReportPageDTO(Page.empty(pageable), facetTotals(facetSize));
+        }
+
+        Map<String, Object> params = pagingParams(pageable);
+        var route = reportQueryTemplates.resolve(q.trim(), params);
+        reportQueryTemplates.project(params, projection, route.intent());
+        params.put("aggs", Map.of("spec", facetAggregations(facetSize)));
+
+        var response = runTemplate(route.templateId(), params);
+        return new FacetedReportPageDTO(toPage(response, pageable), toFacets(response));
+    }
 
-        Highlight highlight = new Highlight(params,
-                List.of(
-                        new HighlightField("analystFullName"),
-                        new HighlightField("sampleHash"),
-                        new HighlightField("threatClassification"),
-                        new HighlightField("securityOrganization"),
-                        new HighlightField("malwareName"),
-                        new HighlightField("behaviorDescriptionSr"),
-                        new HighlightField("behaviorDescriptionEn")
-                )
-        );
+    public Map<String, List<FacetCountDTO>> facets(String q, int facetSize) {
+        checkFacetSize(facetSize);
+        if (q == null || q.isBlank()) {
+            return facetTotals(facetSize);
+        }
 
-        return new HighlightQuery(highlight, MalwareAnalysisIndex.class);
+        Map<String, Object> params = reportQueryTemplates.params(0, 0);
+        return countFacets(reportQueryTemplates.resolve(q.trim(), params).templateId(), params, facetSize);
     }
 
-    private Query buildSingleBarQuery(String q) {
-        if (q == null) {
-            throw new MalformedQueryException("Query is null.");
+    // Query-independent, so they only change with the index generation
+    private Map<String, List<FacetCountDTO>> facetTotals(int facetSize) {
+        return facetTotals.get(new FacetKey(facetSize, indexGeneration.current()),
+                key -> countFacets(reportQueryTemplates.matchAll(), reportQueryTemplates.params(0, 0), facetSize));
+    }
+
+    // No hits and no scoring: the query runs in filter context and the size=0 request is eligible for the
+    // shard request cache
+    private Map<String, List<FacetCountDTO>> countFacets(String templateId, Map<String, Object> params,
+                                                         int facetSize) {
+        params.put("filterOnly", true);
+        params.put("aggs", Map.of("spec", facetAggregations(facetSize)));
+        return toFacets(runTemplate(templateId, params));
+    }
+
+    private static Map<String, Object> facetAggregations(int facetSize) {
+        var aggregations = new LinkedHashMap<String, Object>();
+        for (String facet : FACETS) {
+            // threatClassification is a keyword field itself, the others aggregate their keyword subfield
+            String field = facet.equals("threatClassification") ? facet : facet + ".keyword";
+            aggregations.put(facet, Map.of("terms", Map.of("field", field, "size", facetSize)));
+        }
+        return aggregations;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<String, List<FacetCountDTO>> toFacets(SearchTemplateResponse<Map> response) {
+        var facets = new LinkedHashMap<String, List<FacetCountDTO>>();
+        for (String facet : FACETS) {
+            var aggregate = response.aggregations().get(facet);
+            facets.put(facet, aggregate == null ? List.of() : aggregate.sterms().buckets().array().stream()
+                    .map(bucket -> new FacetCountDTO(bucket.key().stringValue(), bucket.docCount()))
+                    .toList());
+        }
+        return facets;
+    }
+
+    private void checkFacetSize(int facetSize) {
+        if (facetSize < 1 || facetSize > maxFacetSize) {
+            throw new MalformedQueryException("Facet size must be between 1 and " + maxFacetSize + ".");
+        }
+    }
+
+    // search_after over a point-in-time: every page costs the same and max_result_window does not apply
+    public ReportCursorPageDTO searchReportsCursor(String q, String cursor, int size) {
+        CursorState state;
+        if (cursor == null || cursor.isBlank()) {
+            checkCursorPage(q, size);
+            state = new CursorState(q.trim(), size, pointInTimeRegistry.open("malware_analysis"), null);
+        } else {
+            // The cursor comes back from the client, so it gets the same limits as a first request
+            state = decodeCursor(cursor);
+            checkCursorPage(state.query(), state.size());
+            if (state.pitId() == null || state.pitId().isBlank()) {
+                throw new MalformedQueryException("Search cursor is malformed.");
+            }
+        }
+
+        Map<String, Object> params = reportQueryTemplates.params(0, state.size());
+        params.put("sorted", true);
+        params.put("sort", CURSOR_SORT);
+        params.put("pit", Map.of("id", state.pitId(), "keepAlive", pointInTimeRegistry.keepAlive()));
+        if (state.searchAfter() != null) {
+            params.put("searchAfter", Map.of("values", state.searchAfter()));
+        }
+        var route = reportQueryTemplates.resolve(state.query(), params);
+        reportQueryTemplates.project(params, ReportProjection.FULL, route.intent());
+
+        // A point-in-time search names no index
+        SearchTemplateResponse<Map> response;
+        try {
+            response = searchTemplate(route.templateId(), params, null);
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                pointInTimeRegistry.close(state.pitId());
+                throw new NotFoundException("Cursor has expired, start the search again.");
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new StorageException("Report search failed.");
         }
 
-        String raw = q.trim();
-        if (raw.isEmpty()) {
+        String pitId = response.pitId() != null ? response.pitId() : state.pitId();
+        List<Hit<Map>> hits = response.hits().hits();
+        List<MalwareAnalysisIndex> content = new ArrayList<>(hits.size());
+        for (Hit<Map> hit : hits) {
+            content.add(toAnalysisIndex(hit));
+        }
+        long totalHits = response.hits().total() != null ? response.hits().total().value() : content.size();
+
+        if (hits.size() < state.size()) {
+            pointInTimeRegistry.close(pitId);
+            return new ReportCursorPageDTO(content, totalHits, null);
+        }
+        pointInTimeRegistry.touch(state.pitId(), pitId);
+        List<Object> searchAfter = hits.get(hits.size() - 1).sort().stream().map(FieldValue::_get).toList();
+        return new ReportCursorPageDTO(content, totalHits,
+                encodeCursor(new CursorState(state.query(), state.size(), pitId, searchAfter)));
+    }
+
+    private void checkCursorPage(String q, int size) {
+        if (q == null || q.isBlank()) {
             throw new MalformedQueryException("Query is empty.");
         }
+        if (size < 1 || size > maxCursorPageSize) {
+            throw new MalformedQueryException("size must be between 1 and " + maxCursorPageSize + ".");
+        }
+    }
 
-        boolean isPhrase = raw.length() >= 2 && raw.startsWith("'") && raw.endsWith("'");
+    public List<PassageHitDTO> searchPassages(String q, int k) {
+        if (q == null || q.isBlank()) {
+            throw new MalformedQueryException("Query is empty.");
+        }
+        if (k < 1 || k > maxPassageK) {
+            throw new MalformedQueryException("k must be between 1 and " + maxPassageK + ".");
+        }
 
-        String phraseValue = isPhrase ? raw.substring(1, raw.length() - 1).trim() : raw;
-        if (phraseValue.isEmpty()) {
-            throw new MalformedQueryException("Phrase query is empty.");
+        var queryVector = new ArrayList<Float>();
+        for (float value : embeddingService.embed(q.trim())) {
+            queryVector.add(value);
         }
 
-        String lowered = phraseValue.toLowerCase().trim();
+        var knnQuery = new KnnQuery.Builder()
+                .field("vector")
+                .queryVector(queryVector)
+                .k(k)
+                .numCandidates((long) k * candidatesPerHit)
+                .build();
 
-        if (isPhrase) {
-            return BoolQuery.of(b -> {
-                b.should(s -> s.matchPhrase(mp -> mp.field("analystFullName").query(phraseValue).boost(3.0f)));
+        // The vectors are only needed for scoring, leave them out of the response
+        NativeQuery searchQuery = new NativeQueryBuilder()
+                .withKnnQuery(knnQuery)
+                .withSourceFilter(new FetchSourceFilter(null, new String[] {"vector"}))
+                .withMaxResults(k)
+                .build();
 
-                b.should(s -> s.term(t -> t.field("sampleHash").value(phraseValue).boost(5.0f)));
-                b.should(s -> s.term(t -> t.field("sampleHash").value(lowered).boost(5.0f)));
+        SearchHits<ReportPassageIndex> hits = elasticsearchTemplate.search(searchQuery, ReportPassageIndex.class);
 
-                b.should(s -> s.term(t -> t.field("threatClassification").value(phraseValue).boost(4.0f)));
-                b.should(s -> s.term(t -> t.field("threatClassification").value(lowered).boost(4.0f)));
-                b.should(s -> s.matchPhrase(mp -> mp.field("threatClassification").query(phraseValue).boost(1.5f)));
+        List<PassageHitDTO> passages = new ArrayList<>(hits.getSearchHits().size());
+        for (SearchHit<ReportPassageIndex> hit : hits) {
+            ReportPassageIndex passage = hit.getContent();
+            passages.add(new PassageHitDTO(passage.getServerFilename(), passage.getDatabaseId(),
+                    passage.getSource(), passage.getChunkIndex(), passage.getStartOffset(),
+                    passage.getEndOffset(), passage.getText(), (double) hit.getScore()));
+        }
+        return passages;
+    }
 
-                b.should(s -> s.matchPhrase(mp -> mp.field("securityOrganization").query(phraseValue).boost(2.5f)));
-                b.should(s -> s.term(t -> t.field("securityOrganization").value(phraseValue).boost(3.0f)));
-                b.should(s -> s.term(t -> t.field("securityOrganization").value(lowered).boost(3.0f)));
+    // BM25 over the reports and kNN over their passages, merged with reciprocal rank fusion. The vector leg
+    // runs while the lexical one is in flight, so the request takes as long as the slower of the two.
+    public List<HybridReportHitDTO> searchReportsHybrid(String q, String classification, int size) {
+        if (q == null || q.isBlank()) {
+            throw new MalformedQueryException("Query is empty.");
+        }
+        if (size < 1 || size > maxHybridSize) {
+            throw new MalformedQueryException("size must be between 1 and " + maxHybridSize + ".");
+        }
+        String classificationFilter = null;
+        if (classification != null && !classification.isBlank()) {
+            classificationFilter = MalwareAnalysisParser.parseClassification(classification)
+                    .orElseThrow(() -> new MalformedQueryException(
+                            "Unknown threat classification " + classification + "."))
+                    .name();
+        }
 
-                b.should(s -> s.matchPhrase(mp -> mp.field("malwareName").query(phraseValue).boost(2.5f)));
-                b.should(s -> s.term(t -> t.field("malwareName").value(phraseValue).boost(3.0f)));
-                b.should(s -> s.term(t -> t.field("malwareName").value(lowered).boost(3.0f)));
+        String query = q.trim();
+        int window = Math.max(size, hybridWindow);
+        String filter = classificationFilter;
+        // Queuing the text for embedding can block, so that happens on the vector thread as well and the
+        // request thread goes straight to the lexical search
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(vectorTimeoutMs);
+        CompletableFuture<List<String>> vectorLeg;
+        try {
+            vectorLeg = CompletableFuture.supplyAsync(() -> vectorRanking(query, filter, window, deadline),
+                    vectorSearches).orTimeout(vectorTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            vectorLeg = CompletableFuture.failedFuture(e);
+        }
 
-                b.should(s -> s.matchPhrase(mp -> mp.field("behaviorDescriptionSr").query(phraseValue).boost(1.5f)));
-                b.should(s -> s.matchPhrase(mp -> mp.field("behaviorDescriptionEn").query(phraseValue).boost(1.5f)));
+        List<MalwareAnalysisIndex> lexical;
+        try {
+            lexical = lexicalRanking(query, filter, window);
+        } catch (RuntimeException e) {
+            vectorLeg.cancel(true);
+            throw e;
+        }
 
-                b.minimumShouldMatch("1");
-                return b;
-            })._toQuery();
+        List<String> vector;
+        try {
+            vector = vectorLeg.join();
+        } catch (CompletionException | CancellationException e) {
+            // Model still warming up, embedding failure, slow or failing kNN, vector threads saturated: answer
+            // with the lexical ranking
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("Hybrid search falls back to lexical results: {}", cause.toString());
+            meterRegistry.counter("search.hybrid.degraded", "reason", cause.getClass().getSimpleName())
+                    .increment();
+            vector = List.of();
         }
 
-        return BoolQuery.of(b -> {
-            b.should(s -> s.matchPhrase(mp -> mp.field("analystFullName").query(raw).boost(3.0f)));
-            b.should(s -> s.match(m -> m.field("analystFullName")
-                    .query(raw)
-                    .fuzziness(Fuzziness.ONE.asString())
-                    .boost(2.0f)
-            ));
+        return fuse(lexical, vector, size);
+    }
 
-            b.should(s -> s.term(t -> t.field("sampleHash").value(raw).boost(5.0f)));
-            b.should(s -> s.term(t -> t.field("sampleHash").value(raw.toLowerCase().trim()).boost(5.0f)));
+    private List<MalwareAnalysisIndex> lexicalRanking(String query, String classification, int window) {
+        Map<String, Object> params = reportQueryTemplates.params(0, window);
+        if (classification != null) {
+            reportQueryTemplates.addTermFilter(params, "threatClassification", classification);
+        }
+        var route = reportQueryTemplates.resolve(query, params);
+        reportQueryTemplates.project(params, ReportProjection.FULL, route.intent());
+        return toPage(runTemplate(route.templateId(), params), Pageable.unpaged()).getContent();
+    }
 
-            b.should(s -> s.term(t -> t.field("threatClassification").value(raw).boost(4.0f)));
-            b.should(s -> s.term(t -> t.field("threatClassification").value(raw.toLowerCase().trim()).boost(4.0f)));
-            b.should(s -> s.match(m -> m.field("threatClassification").query(raw).boost(1.5f)));
+    // Reports in the order of their best passage. The classification filter is applied inside the kNN
+    // search, so the k nearest are all matching passages rather than whatever survives a post-filter.
+    // Query embeddings are cached, so a repeated query goes straight to the kNN search. A leg that waited
+    // in the queue past its deadline is skipped, nobody is waiting for its result any more.
+    private List<String> vectorRanking(String query, String classification, int window, long deadline) {
+        float[] vector;
+        try {
+            vector = embeddingService.embedAsync(query).get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (TimeoutException e) {
+            throw new CompletionException(e);
+        }
+        remainingNanos(deadline);
 
-            b.should(s -> s.matchPhrase(mp -> mp.field("securityOrganization").query(raw).boost(2.5f)));
-            b.should(s -> s.match(m -> m.field("securityOrganization")
-                    .query(raw)
-                    .fuzziness(Fuzziness.ONE.asString())
-                    .boost(2.0f)
-            ));
-            b.should(s -> s.term(t -> t.field("securityOrganization").value(raw).boost(3.0f)));
-            b.should(s -> s.term(t -> t.field("securityOrganization").value(raw.toLowerCase().trim()).boost(3.0f)));
+        var queryVector = new ArrayList<Float>(vector.length);
+        for (float value : vector) {
+            queryVector.add(value);
+        }
 
-            b.should(s -> s.matchPhrase(mp -> mp.field("malwareName").query(raw).boost(2.5f)));
-            b.should(s -> s.match(m -> m.field("malwareName")
-                    .query(raw)
-                    .fuzziness(Fuzziness.ONE.asString())
-                    .boost(2.0f)
-            ));
-            b.should(s -> s.term(t -> t.field("malwareName").value(raw).boost(3.0f)));
-            b.should(s -> s.term(t -> t.field("malwareName").value(raw.toLowerCase().trim()).boost(3.0f)));
+        int k = window * passagesPerReport;
+        var knnQuery = new KnnQuery.Builder()
+                .field("vector")
+                .queryVector(queryVector)
+                .k(k)
+                .numCandidates((long) k * candidatesPerHit);
+        if (classification != null) {
+            knnQuery.filter(f -> f.term(t -> t.field("threatClassification").value(classification)));
+        }
 
-            b.should(s -> s.match(m -> m.field("behaviorDescriptionSr").query(raw).boost(1.2f)));
-            b.should(s -> s.match(m -> m.field("behaviorDescriptionEn").query(raw).boost(1.0f)));
-            b.should(s -> s.matchPhrase(mp -> mp.field("behaviorDescriptionSr").query(raw).boost(1.5f)));
-            b.should(s -> s.matchPhrase(mp -> mp.field("behaviorDescriptionEn").query(raw).boost(1.5f)));
+        NativeQuery searchQuery = new NativeQueryBuilder()
+                .withKnnQuery(knnQuery.build())
+                .withSourceFilter(new FetchSourceFilter(new String[] {"serverFilename"}, null))
+                .withMaxResults(k)
+                .build();
+
+        var reports = new LinkedHashSet<String>();
+        for (SearchHit<ReportPassageIndex> hit : elasticsearchTemplate.search(searchQuery,
+                ReportPassageIndex.class)) {
+            reports.add(hit.getContent().getServerFilename());
+            if (reports.size() == window) {
+                break;
+            }
+        }
+        return List.copyOf(reports);
+    }
+
+    private static long remainingNanos(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new CompletionException(new TimeoutException("Vector search deadline passed."));
+        }
+        return remaining;
+    }
+
+    // score = sum over legs of 1 / (rank constant + rank); only ranks count, so BM25 and cosine scores never
+    // have to be put on the same scale
+    private List<HybridReportHitDTO> fuse(List<MalwareAnalysisIndex> lexical, List<String> vector, int size) {
+        var reports = new HashMap<String, MalwareAnalysisIndex>();
+        var lexicalRanks = new HashMap<String, Integer>();
+        var vectorRanks = new HashMap<String, Integer>();
+        var scores = new HashMap<String, Double>();
+        for (int i = 0; i < lexical.size(); i++) {
+            String id = lexical.get(i).getId();
+            reports.put(id, lexical.get(i));
+            lexicalRanks.put(id, i + 1);
+            scores.merge(id, 1.0 / (rankConstant + i + 1), Double::sum);
+        }
+        for (int i = 0; i < vector.size(); i++) {
+            vectorRanks.put(vector.get(i), i + 1);
+            scores.merge(vector.get(i), 1.0 / (rankConstant + i + 1), Double::sum);
+        }
+
+        // Reports only the vector leg found still need their documents. They are fetched for the whole fused
+        // window, so the cut to size happens after reports without a document dropped out.
+        List<String> missing = vector.stream().filter(id -> !reports.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (MultiGetItem<MalwareAnalysisIndex> item : elasticsearchTemplate.multiGet(
+                    new NativeQueryBuilder().withIds(missing).build(), MalwareAnalysisIndex.class)) {
+                if (item.hasItem()) {
+                    reports.put(item.getItem().getId(), item.getItem());
+                }
+            }
+        }
+
+        // Passages of a report whose analysis was never confirmed have nothing to show
+        return scores.keySet().stream()
+                .filter(reports::containsKey)
+                .sorted(Comparator.comparing((String id) -> scores.get(id)).reversed()
+                        .thenComparing(id -> lexicalRanks.getOrDefault(id, Integer.MAX_VALUE)))
+                .limit(size)
+                .map(id -> new HybridReportHitDTO(reports.get(id), scores.get(id), lexicalRanks.get(id),
+                        vectorRanks.get(id)))
+                .toList();
+    }
+
+    // Templates render paging and sorting themselves
+    private Map<String, Object> pagingParams(Pageable pageable) {
+        var params = reportQueryTemplates.params(pageable.getOffset(), pageable.getPageSize());
+        if (pageable.getSort().isSorted()) {
+            params.put("sorted", true);
+            params.put("sort", pageable.getSort().stream()
+                    .map(order -> Map.of(order.getProperty(),
+                            Map.of("order", order.getDirection().name().toLowerCase(Locale.ROOT))))
+                    .toList());
+        }
+        return params;
+    }
 
-            b.minimumShouldMatch("1");
-            return b;
-        })._toQuery();
+    @SuppressWarnings("rawtypes")
+    private SearchTemplateResponse<Map> runTemplate(String templateId, Map<String, Object> params) {
+        try {
+            return searchTemplate(templateId, params, "malware_analysis");
+        } catch (IOException e) {
+            throw new StorageException("Report search failed.");
+        }
     }
 
-    private Page<MalwareAnalysisIndex> runMalwareQuery(NativeQuery searchQuery) {
-        SearchHits<MalwareAnalysisIndex> hits = elasticsearchTemplate.search(
-                searchQuery,
-                MalwareAnalysisIndex.class,
-                IndexCoordinates.of("malware_analysis")
-        );
+    @SuppressWarnings("rawtypes")
+    private Page<MalwareAnalysisIndex> toPage(SearchTemplateResponse<Map> response, Pageable pageable) {
+        List<MalwareAnalysisIndex> content = new ArrayList<>(response.hits().hits().size());
+        for (Hit<Map> hit : response.hits().hits()) {
+            content.add(toAnalysisIndex(hit));
+        }
+        long totalHits = response.hits().total() != null ? response.hits().total().value() : content.size();
+        return new PageImpl<>(content, pageable, totalHits);
+    }
 
-        SearchPage<MalwareAnalysisIndex> searchPage =
-                SearchHitSupport.searchPageFor(hits, searchQuery.getPageable());
+    // Templated searches go to the low-level client, the same way for plain, cursor and projected requests
+    @SuppressWarnings("rawtypes")
+    private SearchTemplateResponse<Map> searchTemplate(String templateId, Map<String, Object> params, String index)
+            throws IOException {
+        return elasticsearchClient.searchTemplate(r -> {
+            r.id(templateId).params(ReportQueryTemplates.toJson(params));
+            if (index != null) {
+                r.index(index);
+            }
+            return r;
+        }, Map.class);
+    }
 
-        List<SearchHit<MalwareAnalysisIndex>> rawHits =
-                searchPage.getSearchHits().getSearchHits();
+    // Doc value fields come back as lists under their own names, e.g. malwareName.keyword
+    @SuppressWarnings("unchecked")
+    private MalwareAnalysisIndex toAnalysisIndex(Hit<Map> hit) {
+        Map<String, Object> values = hit.source() != null ? new HashMap<>(hit.source()) : new HashMap<>();
+        hit.fields().forEach((field, value) -> {
+            List<Object> docValues = value.to(List.class);
+            if (!docValues.isEmpty()) {
+                values.put(field.endsWith(".keyword") ? field.substring(0, field.length() - 8) : field,
+                        docValues.get(0));
+            }
+        });
+        Document source = Document.from(values);
+        source.setId(hit.id());
+        MalwareAnalysisIndex doc = elasticsearchTemplate.getElasticsearchConverter()
+                .read(MalwareAnalysisIndex.class, source);
+        doc.setHighlights(hit.highlight());
+        return doc;
+    }
 
-        List<MalwareAnalysisIndex> content = new ArrayList<>(rawHits.size());
-        for (SearchHit<MalwareAnalysisIndex> hit : rawHits) {
-            MalwareAnalysisIndex doc = hit.getContent();
-            doc.setHighlights(hit.getHighlightFields()); // Map<String, List<String>>
-            content.add(doc);
+    private String encodeCursor(CursorState state) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(state));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode search cursor.", e);
         }
+    }
+
+    private CursorState decodeCursor(String cursor) {
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), CursorState.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new MalformedQueryException("Search cursor is malformed.");
+        }
+    }
+
+    // Travels to the client base64-encoded; the query is carried along so follow-up calls need only the cursor
+    record CursorState(String query, int size, String pitId, List<Object> searchAfter) {
+    }
+
+    private record FacetKey(int size, long generation) {
+    }
 
-        return new PageImpl<>(content, searchQuery.getPageable(), searchPage.getTotalElements());
+    private record ResultKey(String query, int page, int size, String sort, ReportProjection projection,
+                             long generation) {
     }
-}
\ No newline at end of file
+}
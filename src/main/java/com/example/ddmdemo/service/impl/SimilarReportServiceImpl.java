@@ -0,0 +1,295 @@
+package com.example.ddmdemo.service.impl;
+
+import com.example.ddmdemo.dto.SimilarReportDTO;
+import com.example.ddmdemo.exceptionhandling.exception.MalformedQueryException;
+import com.example.ddmdemo.exceptionhandling.exception.NotFoundException;
+import com.example.ddmdemo.indexmodel.DummyIndex;
+import com.example.ddmdemo.indexmodel.ReportPassageIndex;
+import com.example.ddmdemo.service.interfaces.SimilarReportService;
+import com.example.ddmdemo.util.HnswIndex;
+import com.example.ddmdemo.util.ScalarQuantizer;
+import com.example.ddmdemo.util.VectorQuantization;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.stereotype.Service;
+
+// "Similar reports" are answered from two in-process HNSW graphs, one over title vectors and one over
+// behavior vectors, so the lookup never goes to Elasticsearch. Elasticsearch stays the source of truth
+// the graphs can be rebuilt from. With vectorization.quantization.enabled the graphs hold int8 codes.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SimilarReportServiceImpl implements SimilarReportService {
+
+    private static final int DIMENSIONS = 384;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final VectorQuantization vectorQuantization;
+
+    @Value("${similar.index.directory:similar-index}")
+    private Path directory;
+
+    @Value("${similar.index.m:16}")
+    private int m;
+
+    @Value("${similar.index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${similar.index.ef-search:64}")
+    private int efSearch;
+
+    @Value("${similar.index.max-k:50}")
+    private int maxK;
+
+    @Value("${similar.index.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private volatile HnswIndex titleIndex;
+
+    private volatile HnswIndex behaviorIndex;
+
+    // Additions hold the read side, opening the backlog and the swap hold the write side, so every
+    // addition lands either in the graphs that stay or in the backlog replayed onto them
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // Additions that arrive while a rebuild runs, replayed onto the rebuilt graphs; guarded by swapLock
+    private Map<String, float[][]> rebuildBacklog;
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void open() {
+        titleIndex = loadOrEmpty(titleFile());
+        behaviorIndex = loadOrEmpty(behaviorFile());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "similar-index-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        // First start, the files were removed, or they were built with other quantization settings: rebuild
+        // from Elasticsearch without holding up startup
+        if (!Files.exists(titleFile()) || !hasCurrentQuantization(titleIndex)
+            || !hasCurrentQuantization(behaviorIndex)) {
+            flusher.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("Could not rebuild the similar-report index from Elasticsearch", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    @Override
+    public void add(String fileName, float[] titleVector, float[] behaviorVector) {
+        swapLock.readLock().lock();
+        try {
+            if (titleVector != null) {
+                titleIndex.add(fileName, titleVector);
+            }
+            if (behaviorVector != null) {
+                behaviorIndex.add(fileName, behaviorVector);
+            }
+
+            if (rebuildBacklog != null) {
+                rebuildBacklog.put(fileName, new float[][] {titleVector, behaviorVector});
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        dirty.set(true);
+    }
+
+    @Override
+    public List<SimilarReportDTO> findSimilar(String fileName, String by, int k) {
+        if (k < 1 || k > maxK) {
+            throw new MalformedQueryException("k must be between 1 and " + maxK + ".");
+        }
+
+        var index = switch (by == null ? "title" : by.toLowerCase()) {
+            case "title" -> titleIndex;
+            case "behavior" -> behaviorIndex;
+            default -> throw new MalformedQueryException("Unknown similarity '" + by + "', use title or behavior.");
+        };
+
+        var vector = index.vector(fileName);
+        if (vector == null) {
+            throw new NotFoundException("No " + by + " vector is indexed for report " + fileName + ".");
+        }
+
+        var similar = new ArrayList<SimilarReportDTO>(k);
+        for (var neighbor : index.search(vector, k, efSearch, fileName::equals)) {
+            similar.add(new SimilarReportDTO(neighbor.id(), (double) neighbor.score()));
+        }
+        return similar;
+    }
+
+    // Built aside and swapped in, so lookups keep working meanwhile; also drops replaced nodes
+    @Override
+    public synchronized int rebuild() {
+        var titles = newIndex();
+        var behaviors = newIndex();
+        var backlog = new ConcurrentHashMap<String, float[][]>();
+        swapLock.writeLock().lock();
+        try {
+            rebuildBacklog = backlog;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        try {
+            // Reports are added only after Elasticsearch acknowledged them, so once refreshed every addition
+            // that came before the backlog opened is visible to the rebuild
+            elasticsearchOperations.indexOps(DummyIndex.class).refresh();
+            elasticsearchOperations.indexOps(ReportPassageIndex.class).refresh();
+            fill(titles, behaviors);
+        } catch (RuntimeException e) {
+            swapLock.writeLock().lock();
+            try {
+                rebuildBacklog = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            backlog.forEach((fileName, vectors) -> {
+                if (vectors[0] != null) {
+                    titles.add(fileName, vectors[0]);
+                }
+                if (vectors[1] != null) {
+                    behaviors.add(fileName, vectors[1]);
+                }
+            });
+            titleIndex = titles;
+            behaviorIndex = behaviors;
+            rebuildBacklog = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        dirty.set(true);
+        flush();
+
+        log.info("Rebuilt similar-report index with {} title and {} behavior vector(s)", titles.size(),
+            behaviors.size());
+        return titles.size();
+    }
+
+    private void fill(HnswIndex titles, HnswIndex behaviors) {
+
+        var titleQuery = NativeQuery.builder()
+            .withQuery(q -> q.exists(e -> e.field("vectorizedContent")))
+            .withSourceFilter(new FetchSourceFilter(new String[] {"server_filename", "vectorizedContent"}, null))
+            .build();
+        try (var hits = elasticsearchOperations.searchForStream(titleQuery, DummyIndex.class)) {
+            hits.forEachRemaining(hit -> titles.add(hit.getContent().getServerFilename(),
+                hit.getContent().getVectorizedContent()));
+        }
+
+        // A report's behavior vector is the mean of its behavior passage vectors
+        var sums = new HashMap<String, float[]>();
+        var behaviorQuery = NativeQuery.builder()
+            .withQuery(q -> q.term(t -> t.field("source").value("BEHAVIOR")))
+            .withSourceFilter(new FetchSourceFilter(new String[] {"serverFilename", "vector"}, null))
+            .build();
+        try (var hits = elasticsearchOperations.searchForStream(behaviorQuery, ReportPassageIndex.class)) {
+            hits.forEachRemaining(hit -> accumulate(sums, hit.getContent().getServerFilename(),
+                hit.getContent().getVector()));
+        }
+        sums.forEach(behaviors::add);
+    }
+
+    // Unnormalized sum; the index normalizes on insert, which turns it into the mean direction
+    static void accumulate(Map<String, float[]> sums, String fileName, float[] vector) {
+        if (vector == null) {
+            return;
+        }
+
+        var sum = sums.computeIfAbsent(fileName, key -> new float[vector.length]);
+        for (int i = 0; i < vector.length; i++) {
+            sum[i] += vector[i];
+        }
+    }
+
+    private synchronized void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            titleIndex.save(titleFile());
+            behaviorIndex.save(behaviorFile());
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("Could not persist the similar-report index to {}", directory, e);
+        }
+    }
+
+    private HnswIndex loadOrEmpty(Path file) {
+        if (Files.exists(file)) {
+            try {
+                var index = HnswIndex.load(file);
+                log.info("Loaded {} vector(s) from {}", index.size(), file);
+                return index;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not load {}, starting empty", file, e);
+            }
+        }
+        return newIndex();
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(DIMENSIONS, m, efConstruction, vectorQuantization.quantizer().orElse(null));
+    }
+
+    private boolean hasCurrentQuantization(HnswIndex index) {
+        ScalarQuantizer current = vectorQuantization.quantizer().orElse(null);
+        ScalarQuantizer used = index.getQuantizer();
+        if (current == null || used == null) {
+            return current == used;
+        }
+        return current.getMin() == used.getMin() && current.getMax() == used.getMax();
+    }
+
+    private Path titleFile() {
+        return directory.resolve("title.hnsw");
+    }
+
+    private Path behaviorFile() {
+        return directory.resolve("behavior.hnsw");
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.ddmdemo.service.interfaces;
+
+import com.example.ddmdemo.dto.IndexingJobDTO;
+import java.util.List;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+@Service
+public interface BatchIndexingService {
+
+    IndexingJobDTO submit(List<MultipartFile> documentFiles, boolean autoConfirm);
+
+    IndexingJobDTO getJob(String jobId);
+}
@@ -0,0 +1,16 @@
+package com.example.ddmdemo.service.interfaces;
+
+import java.util.concurrent.CompletableFuture;
+import org.springframework.stereotype.Service;
+
+@Service
+public interface EmbeddingService {
+
+    // Completes once the batch containing this text went through the model
+    CompletableFuture<float[]> embedAsync(String text);
+
+    float[] embed(String text);
+
+    // Throws ModelNotReadyException if the model did not finish warming up within the configured wait
+    void awaitReady();
+}
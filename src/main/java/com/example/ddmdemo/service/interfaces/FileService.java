@@ -1,13 +1,13 @@
 package com.example.ddmdemo.service.interfaces;
 
+import com.example.ddmdemo.util.SpooledUpload;
 import io.minio.GetObjectResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public interface FileService {
 
-    String store(MultipartFile file, String serverFilename);
+    String store(SpooledUpload file, String serverFilename);
 
     void delete(String serverFilename);
 
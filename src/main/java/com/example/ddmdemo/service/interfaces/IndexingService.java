@@ -1,6 +1,7 @@
 package com.example.ddmdemo.service.interfaces;
 
 import com.example.ddmdemo.model.MalwareAnalysis;
+import java.io.InputStream;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -9,5 +10,7 @@ public interface IndexingService {
 
     MalwareAnalysis indexDocument(MultipartFile documentFile);
 
+    MalwareAnalysis indexDocument(InputStream documentContent, String originalFilename);
+
     MalwareAnalysis confirmAndIndex(MalwareAnalysis analysis);
 }
@@ -0,0 +1,9 @@
+package com.example.ddmdemo.service.interfaces;
+
+import org.springframework.stereotype.Service;
+
+@Service
+public interface LanguageDetectionService {
+
+    String detectLanguage(String text);
+}
@@ -0,0 +1,12 @@
+package com.example.ddmdemo.service.interfaces;
+
+import com.example.ddmdemo.dto.ReportExportQueryDTO;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Service
+public interface ReportExportService {
+
+    // Validates the query up front; the returned body runs the export while it is being written
+    StreamingResponseBody export(ReportExportQueryDTO query);
+}
@@ -1,9 +1,16 @@
 package com.example.ddmdemo.service.interfaces;
 
+import com.example.ddmdemo.dto.FacetCountDTO;
+import com.example.ddmdemo.dto.FacetedReportPageDTO;
+import com.example.ddmdemo.dto.HybridReportHitDTO;
+import com.example.ddmdemo.dto.PassageHitDTO;
+import com.example.ddmdemo.dto.ReportCursorPageDTO;
 import com.example.ddmdemo.indexmodel.DummyIndex;
 import java.util.List;
+import java.util.Map;
 
 import com.example.ddmdemo.indexmodel.MalwareAnalysisIndex;
+import com.example.ddmdemo.model.ReportProjection;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,5 +22,17 @@ public interface SearchService {
 
     //Page<DummyIndex> advancedSearch(List<String> expression, Pageable pageable);
 
-    Page<MalwareAnalysisIndex> searchReports(String q, Pageable pageable);
+    Page<MalwareAnalysisIndex> searchReports(String q, Pageable pageable, ReportProjection projection);
+
+    FacetedReportPageDTO searchReportsFaceted(String q, Pageable pageable, ReportProjection projection, int facetSize);
+
+    // Blank q gives the totals over all reports
+    Map<String, List<FacetCountDTO>> facets(String q, int facetSize);
+
+    ReportCursorPageDTO searchReportsCursor(String q, String cursor, int size);
+
+    List<PassageHitDTO> searchPassages(String q, int k);
+
+    // Falls back to the lexical ranking alone when the query cannot be embedded in time
+    List<HybridReportHitDTO> searchReportsHybrid(String q, String classification, int size);
 }
@@ -0,0 +1,16 @@
+package com.example.ddmdemo.service.interfaces;
+
+import com.example.ddmdemo.dto.SimilarReportDTO;
+import java.util.List;
+import org.springframework.stereotype.Service;
+
+@Service
+public interface SimilarReportService {
+
+    // Either vector may be null, in which case that index is left as it is
+    void add(String fileName, float[] titleVector, float[] behaviorVector);
+
+    List<SimilarReportDTO> findSimilar(String fileName, String by, int k);
+
+    int rebuild();
+}
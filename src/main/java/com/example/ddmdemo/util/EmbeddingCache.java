@@ -0,0 +1,106 @@
+package com.example.ddmdemo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Two tiers: an in-memory LRU for hot texts, and a memory-mapped file that survives restarts and reindexing
+@Component
+@Slf4j
+public class EmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${embedding.cache.memory-entries:10000}")
+    private long memoryEntries;
+
+    @Value("${embedding.cache.file:embedding-cache/embeddings.bin}")
+    private Path file;
+
+    @Value("${embedding.cache.max-disk-records:1000000}")
+    private long maxDiskRecords;
+
+    @Value("${embedding.cache.dimensions:384}")
+    private int dimensions;
+
+    private Cache<EmbeddingKey, float[]> recent;
+
+    private MappedEmbeddingStore store;
+
+    @PostConstruct
+    void open() {
+        recent = Caffeine.newBuilder()
+            .maximumSize(memoryEntries)
+            .build();
+
+        try {
+            store = new MappedEmbeddingStore(file, dimensions, maxDiskRecords);
+        } catch (IOException e) {
+            log.warn("Embedding store {} is unavailable, caching embeddings in memory only", file, e);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    // Same model + same text modulo Unicode form and whitespace gives the same key
+    public EmbeddingKey keyFor(String modelId, String text) {
+        var normalized = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            var words = ByteBuffer.wrap(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+            return new EmbeddingKey(words.getLong(), words.getLong(), words.getLong(), words.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    public float[] get(EmbeddingKey key) {
+        var vector = recent.getIfPresent(key);
+        if (vector == null && store != null) {
+            vector = store.get(key);
+            if (vector != null) {
+                recent.put(key, vector);
+            }
+        }
+        // Callers own what they get back
+        return vector == null ? null : vector.clone();
+    }
+
+    // Stored vectors only; the in-memory tier holds nothing the store does not also have
+    public List<float[]> sample(int limit) {
+        return store == null ? List.of() : store.sample(limit);
+    }
+
+    public void put(EmbeddingKey key, float[] vector) {
+        recent.put(key, vector.clone());
+        if (store == null) {
+            return;
+        }
+
+        try {
+            store.put(key, vector);
+        } catch (IOException e) {
+            log.warn("Could not persist embedding to {}", file, e);
+        }
+    }
+}
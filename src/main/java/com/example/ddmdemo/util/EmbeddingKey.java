@@ -0,0 +1,5 @@
+package com.example.ddmdemo.util;
+
+// SHA-256 digest of model id + normalized text, kept as four longs so it can be a compact map key
+public record EmbeddingKey(long word0, long word1, long word2, long word3) {
+}
@@ -0,0 +1,497 @@
+package com.example.ddmdemo.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// Hierarchical navigable small world graph over unit vectors, scored by dot product (= cosine).
+// Re-adding an id replaces its vector; the old node stays in the graph for navigation but is never
+// returned, until the index is rebuilt. With a quantizer, nodes keep only their int8 codes, a quarter of
+// the float vector's size, and are scored on those.
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357;
+
+    private static final int VERSION = 2;
+
+    // Version 1 files hold float vectors only and lack the quantization fields
+    private static final int HEADER_BYTES_V1 = 8 * Integer.BYTES;
+
+    private static final int HEADER_BYTES = HEADER_BYTES_V1 + Integer.BYTES + 2 * Float.BYTES;
+
+    private final int dimensions;
+
+    private final int m;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    // Null for a float index
+    private final ScalarQuantizer quantizer;
+
+    private final Random random = new Random(42);
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    // Writers rewire neighbor lists of existing nodes, so searches must not run concurrently with them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this(dimensions, m, efConstruction, null);
+    }
+
+    public HnswIndex(int dimensions, int m, int efConstruction, ScalarQuantizer quantizer) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.quantizer = quantizer;
+    }
+
+    public void add(String id, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                "Expected a vector with " + dimensions + " dimensions, got " + vector.length + ".");
+        }
+
+        var normalized = VectorMath.normalize(vector.clone());
+        lock.writeLock().lock();
+        try {
+            var previous = ordinals.get(id);
+            if (previous != null) {
+                nodes.get(previous).deleted = true;
+            }
+            insert(point(id, normalized, randomLevel()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            var ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return false;
+            }
+            nodes.get(ordinal).deleted = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public float[] vector(String id) {
+        lock.readLock().lock();
+        try {
+            var ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                return null;
+            }
+            var node = nodes.get(ordinal);
+            return quantizer == null ? node.vector.clone() : quantizer.dequantize(node.codes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Neighbor> search(float[] query, int k, int ef, Predicate<String> exclude) {
+        var normalized = point(null, VectorMath.normalize(query.clone()), 0);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedyClosest(normalized, current, level);
+            }
+
+            var results = new ArrayList<Neighbor>(k);
+            for (var candidate : searchLayer(normalized, current, Math.max(ef, k), 0)) {
+                var node = nodes.get(candidate.ordinal());
+                if (!node.deleted && !exclude.test(node.id)) {
+                    results.add(new Neighbor(node.id, candidate.score()));
+                    if (results.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public ScalarQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    private Node point(String id, float[] normalized, int level) {
+        return quantizer == null
+            ? new Node(id, normalized, null, 0f, level)
+            : quantized(id, quantizer.quantize(normalized), level);
+    }
+
+    private Node quantized(String id, byte[] codes, int level) {
+        return new Node(id, null, codes, quantizer.correction(codes), level);
+    }
+
+    private float score(Node a, Node b) {
+        return quantizer == null
+            ? VectorMath.dot(a.vector, b.vector)
+            : quantizer.dot(a.codes, a.correction, b.codes, b.correction);
+    }
+
+    private void insert(Node node) {
+        int ordinal = nodes.size();
+        nodes.add(node);
+        ordinals.put(node.id, ordinal);
+
+        if (entryPoint < 0) {
+            entryPoint = ordinal;
+            maxLevel = node.level();
+            return;
+        }
+
+        int current = entryPoint;
+        for (int level = maxLevel; level > node.level(); level--) {
+            current = greedyClosest(node, current, level);
+        }
+
+        for (int level = Math.min(node.level(), maxLevel); level >= 0; level--) {
+            var candidates = searchLayer(node, current, efConstruction, level);
+            var selected = selectNeighbors(candidates, maxNeighbors(level));
+            node.neighbors[level] = toOrdinals(selected);
+
+            for (var neighbor : selected) {
+                connect(neighbor.ordinal(), ordinal, level);
+            }
+            current = candidates.get(0).ordinal();
+        }
+
+        if (node.level() > maxLevel) {
+            entryPoint = ordinal;
+            maxLevel = node.level();
+        }
+    }
+
+    private void connect(int from, int to, int level) {
+        var node = nodes.get(from);
+        var current = node.neighbors[level];
+        var grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = to;
+        if (grown.length <= maxNeighbors(level)) {
+            node.neighbors[level] = grown;
+            return;
+        }
+
+        // Over capacity: keep the most diverse set among the old neighbors and the new one
+        var candidates = new ArrayList<Scored>(grown.length);
+        for (int ordinal : grown) {
+            candidates.add(new Scored(ordinal, score(node, nodes.get(ordinal))));
+        }
+        candidates.sort(Scored.BEST_FIRST);
+        node.neighbors[level] = toOrdinals(selectNeighbors(candidates, maxNeighbors(level)));
+    }
+
+    // Heuristic from the HNSW paper: skip a candidate that is closer to an already selected neighbor than
+    // to the base node, then top up with the skipped ones. Candidates arrive best first.
+    private List<Scored> selectNeighbors(List<Scored> candidates, int max) {
+        var selected = new ArrayList<Scored>(max);
+        var skipped = new ArrayList<Scored>();
+        for (var candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+
+            var node = nodes.get(candidate.ordinal());
+            boolean diverse = true;
+            for (var chosen : selected) {
+                if (score(node, nodes.get(chosen.ordinal())) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private int greedyClosest(Node query, int start, int level) {
+        int current = start;
+        float best = score(query, nodes.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : nodes.get(current).neighbors[level]) {
+                float score = score(query, nodes.get(neighbor));
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Best-first expansion keeping the ef best nodes seen; returned best first
+    private List<Scored> searchLayer(Node query, int start, int ef, int level) {
+        var visited = new BitSet(nodes.size());
+        var candidates = new PriorityQueue<>(Scored.BEST_FIRST);
+        var results = new PriorityQueue<>(Scored.BEST_FIRST.reversed());
+
+        var first = new Scored(start, score(query, nodes.get(start)));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            var closest = candidates.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) {
+                break;
+            }
+
+            var neighbors = nodes.get(closest.ordinal()).neighbors;
+            if (level >= neighbors.length) {
+                continue;
+            }
+            for (int neighbor : neighbors[level]) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+
+                float score = score(query, nodes.get(neighbor));
+                if (results.size() < ef || score > results.peek().score()) {
+                    var scored = new Scored(neighbor, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        var ordered = new ArrayList<>(results);
+        ordered.sort(Scored.BEST_FIRST);
+        return ordered;
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private static int[] toOrdinals(List<Scored> scored) {
+        var ordinals = new int[scored.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = scored.get(i).ordinal();
+        }
+        return ordinals;
+    }
+
+    // Written to a temporary file through a mapping of its final size, then moved over the old one
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            var encodedIds = new ArrayList<byte[]>(nodes.size());
+            long size = HEADER_BYTES;
+            int vectorBytes = quantizer == null ? dimensions * Float.BYTES : dimensions;
+            for (var node : nodes) {
+                var encodedId = node.id.getBytes(StandardCharsets.UTF_8);
+                encodedIds.add(encodedId);
+                size += Short.BYTES + encodedId.length + 2 + vectorBytes;
+                for (var levelNeighbors : node.neighbors) {
+                    size += Integer.BYTES + (long) levelNeighbors.length * Integer.BYTES;
+                }
+            }
+
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(m).putInt(efConstruction)
+                    .putInt(nodes.size()).putInt(entryPoint).putInt(maxLevel);
+                buffer.putInt(quantizer == null ? 0 : 1)
+                    .putFloat(quantizer == null ? 0f : quantizer.getMin())
+                    .putFloat(quantizer == null ? 0f : quantizer.getMax());
+
+                for (int i = 0; i < nodes.size(); i++) {
+                    var node = nodes.get(i);
+                    buffer.putShort((short) encodedIds.get(i).length).put(encodedIds.get(i));
+                    buffer.put((byte) (node.deleted ? 1 : 0)).put((byte) node.level());
+                    if (quantizer == null) {
+                        for (float value : node.vector) {
+                            buffer.putFloat(value);
+                        }
+                    } else {
+                        buffer.put(node.codes);
+                    }
+                    for (var levelNeighbors : node.neighbors) {
+                        buffer.putInt(levelNeighbors.length);
+                        for (int neighbor : levelNeighbors) {
+                            buffer.putInt(neighbor);
+                        }
+                    }
+                }
+                buffer.force();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex load(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER_BYTES_V1 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an HNSW index file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported HNSW index version " + version + ": " + file);
+            }
+
+            int dimensions = buffer.getInt();
+            int m = buffer.getInt();
+            int efConstruction = buffer.getInt();
+            int count = buffer.getInt();
+            int entryPoint = buffer.getInt();
+            int maxLevel = buffer.getInt();
+            ScalarQuantizer quantizer = null;
+            if (version >= 2) {
+                boolean quantized = buffer.getInt() == 1;
+                float min = buffer.getFloat();
+                float max = buffer.getFloat();
+                quantizer = quantized ? new ScalarQuantizer(min, max) : null;
+            }
+
+            var index = new HnswIndex(dimensions, m, efConstruction, quantizer);
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                var encodedId = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(encodedId);
+                boolean deleted = buffer.get() == 1;
+                var id = new String(encodedId, StandardCharsets.UTF_8);
+                int nodeLevel = buffer.get();
+                Node node;
+                if (quantizer == null) {
+                    node = new Node(id, new float[dimensions], null, 0f, nodeLevel);
+                    buffer.asFloatBuffer().get(node.vector);
+                    buffer.position(buffer.position() + dimensions * Float.BYTES);
+                } else {
+                    var codes = new byte[dimensions];
+                    buffer.get(codes);
+                    node = index.quantized(id, codes, nodeLevel);
+                }
+                for (int level = 0; level <= node.level(); level++) {
+                    var levelNeighbors = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(levelNeighbors);
+                    buffer.position(buffer.position() + levelNeighbors.length * Integer.BYTES);
+                    node.neighbors[level] = levelNeighbors;
+                }
+
+                node.deleted = deleted;
+                index.nodes.add(node);
+                if (!deleted) {
+                    index.ordinals.put(node.id, ordinal);
+                }
+            }
+            return index;
+        }
+    }
+
+    public record Neighbor(String id, float score) {
+    }
+
+    private record Scored(int ordinal, float score) {
+
+        static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed();
+    }
+
+    private static final class Node {
+
+        private final String id;
+
+        // Exactly one of vector and codes is set, depending on whether the index quantizes
+        private final float[] vector;
+
+        private final byte[] codes;
+
+        private final float correction;
+
+        private final int[][] neighbors;
+
+        private boolean deleted;
+
+        Node(String id, float[] vector, byte[] codes, float correction, int level) {
+            this.id = id;
+            this.vector = vector;
+            this.codes = codes;
+            this.correction = correction;
+            this.neighbors = new int[level + 1][];
+            Arrays.fill(neighbors, new int[0]);
+        }
+
+        int level() {
+            return neighbors.length - 1;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ddmdemo.util;
+
+import com.example.ddmdemo.model.IngestDraft;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class IngestDraftCache {
+
+    @Value("${ingest.draft.max-entries:1000}")
+    private long maxEntries;
+
+    @Value("${ingest.draft.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Cache<String, IngestDraft> drafts;
+
+    @PostConstruct
+    void buildCache() {
+        drafts = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .build();
+    }
+
+    public void put(IngestDraft draft) {
+        drafts.put(draft.fileName(), draft);
+    }
+
+    public Optional<IngestDraft> get(String fileName) {
+        return Optional.ofNullable(drafts.getIfPresent(fileName));
+    }
+}
@@ -2,19 +2,30 @@ package com.example.ddmdemo.util;
 
 import com.example.ddmdemo.model.MalwareAnalysis;
 import com.example.ddmdemo.model.ThreatClassification;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+// Single forward pass over the extracted text. Every line goes through the key:value recognizer, every
+// character through the template state machines; results are combined with the same precedence the
+// original regex scans had (key:value first, then template matches, then a global hash scan).
 @Component
+@Slf4j
 public class MalwareAnalysisParser {
 
-    // -------------- KEY:VALUE SUPPORT (your existing approach) --------------
-    private static final Pattern KEY_VALUE_LINE =
-            Pattern.compile("(?m)^\\s*([^:\\n]{2,60})\\s*:\\s*(.*?)\\s*$");
+    // -------------- KEY:VALUE SUPPORT --------------
+    // A line is treated the way "(?m)^\\s*([^:\\n]{2,60})\\s*:\\s*(.*?)\\s*$" would match it, including
+    // "Key:" lines whose value sits on the next non-blank line.
+    private static final int MAX_KEY_LENGTH = 60;
 
     private static final Pattern HASH_PATTERN =
             Pattern.compile("(?i)\\b([a-f0-9]{32}|[a-f0-9]{64})\\b");
@@ -68,71 +79,332 @@ public class MalwareAnalysisParser {
             Map.entry("sample hash", "sampleHash")
     );
 
+    private static final AliasTrie ALIASES = AliasTrie.of(KEY_ALIASES);
+
     // -------------- TEMPLATE SUPPORT (your PDF image layout) --------------
 
     // Matches: "Organizacija <NAME>" or "Organizacija: NAME"
+    // Only evaluated on a candidate line plus the few lines the pattern can reach.
     private static final Pattern ORG_PATTERN =
             Pattern.compile("(?im)^\\s*Organizacija\\s*:?\\s*(.+?)\\s*$");
 
+    private static final String ORG_LINE_PREFIX = "organizacija";
+
+    private static final int ORG_LOOKAHEAD_LINES = 2;
+
     // Matches: "Klasifikacija: <CLASS>, <HASH>" (hash may be hex or any string)
     private static final Pattern CLASS_AND_HASH_PATTERN =
             Pattern.compile("(?im)^\\s*Klasifikacija\\s*:\\s*([^,\\n]+)\\s*,\\s*([^\\n]+)\\s*$");
 
-    // Matches: "... ukazuje na <THREAT>. Opis ponašanja"
-    private static final Pattern THREAT_IN_SENTENCE_PATTERN =
-            Pattern.compile("(?is)ukazuje\\s+na\\s+(.+?)\\s*\\.\\s*Opis\\s+pona", Pattern.UNICODE_CASE);
-
-    // Stop when we reach:
-    // 1) a standalone name line (two words with capital letters)
-    // 2) OR a line that starts with "Potpis"
-    // 3) OR end of document
-    private static final Pattern BEHAVIOR_BLOCK_PATTERN =
-            Pattern.compile(
-                    "(?is)malvera\\s*/\\s*pretnje\\s*:\\s*(.+?)(?=\\n\\s*[A-ZŠĐČĆŽ][a-zšđčćž]+\\s+[A-ZŠĐČĆŽ][a-zšđčćž]+\\s*$|\\n\\s*Potpis\\b|\\z)",
-                    Pattern.UNICODE_CASE
-            );
-
-    // Captures:
-    // 1) description after "malvera/pretnje:"
-    // 2) analyst name line right before "Potpis ..."
-    private static final Pattern BEHAVIOR_AND_ANALYST_PATTERN =
-            Pattern.compile(
-                    "(?is)malvera\\s*/\\s*pretnje\\s*:\\s*(.+?)\\s*\\n\\s*([A-ZŠĐČĆŽ][\\p{L}.'-]+\\s+[A-ZŠĐČĆŽ][\\p{L}.'-]+)\\s*\\n\\s*Potpis\\b"
-            );
-
-    // Fallback (if name line is missing)
-    private static final Pattern BEHAVIOR_BLOCK_FALLBACK_PATTERN =
-            Pattern.compile("(?is)malvera\\s*/\\s*pretnje\\s*:\\s*(.+?)(?=\\n\\s*Potpis\\b|\\z)");
-
-    // Matches a name before "Potpis forenzičara"
-    private static final Pattern ANALYST_NAME_PATTERN =
-            Pattern.compile("(?is)\\n\\s*([^\\n]{2,80}?)\\s*\\n\\s*Potpis\\s+forenzi\\S*ara\\b");
+    private static final String CLASS_LINE_PREFIX = "klasifikacija";
+
+    private static final int CLASS_LOOKAHEAD_LINES = 4;
+
+    // "... ukazuje na <THREAT>. Opis ponašanja", see ThreatSentence
+    private static final String THREAT_ANCHOR = "ukazuje";
+
+    private static final String THREAT_END = "opis";
+
+    private static final String THREAT_END_NEXT = "pona";
+
+    // "malvera/pretnje: <behavior> <Name Surname> Potpis ...", see BehaviorBlock
+    private static final String BEHAVIOR_ANCHOR = "malvera";
+
+    private static final String BEHAVIOR_ANCHOR_NEXT = "pretnje";
+
+    private static final String SIGNATURE = "potpis";
+
+    private static final String NAME_INITIALS = "ŠĐČĆŽ";
+
+    // How often (in lines) the time budget is checked
+    private static final int CLOCK_INTERVAL = 256;
+
+    // Upper bound per document; whatever was recognized until then is returned
+    @Value("${parser.time-budget-ms:2000}")
+    private long timeBudgetMs;
 
     public MalwareAnalysis parse(String extractedText) {
         if (extractedText == null || extractedText.isBlank()) {
             return MalwareAnalysis.builder().build();
         }
 
-        // Keep explicit variables (avoid builder.build() inside loops)
-        String analystFullName = null;
-        String securityOrganization = null;
-        String malwareName = null;
-        String behaviorDescription = null;
-        ThreatClassification threatClassification = null;
-        String sampleHash = null;
+        var session = newSession();
+        session.feed(extractedText);
+        return session.finish();
+    }
+
+    // For callers that receive the text in pieces (e.g. page ranges); chunks may split lines anywhere
+    public Session newSession() {
+        return new Session(TimeUnit.MILLISECONDS.toNanos(timeBudgetMs));
+    }
+
+    public final class Session {
+
+        private final StringBuilder text = new StringBuilder();
+
+        // Only time spent inside feed() counts, not the gaps while the caller produces more text
+        private final long budgetNanos;
+
+        private long spentNanos;
+
+        private long feedStartedAt;
+
+        // Leading whitespace is dropped, like the trimmed text parse() is given
+        private boolean started;
+
+        private int scanned;
+
+        private int lineStart;
+
+        private int lineCount;
+
+        private boolean stopped;
+
+        private boolean timedOut;
+
+        // Key:value results, they take precedence over everything else
+        private String analystFullName;
+
+        private String securityOrganization;
+
+        private String malwareName;
+
+        private String behaviorDescription;
+
+        private ThreatClassification threatClassification;
+
+        private String sampleHash;
+
+        // A colon-less line whose ':' may still follow after blank lines
+        private boolean hasCarriedKey;
+
+        private String carriedKey;
+
+        // "Key:" with nothing after it takes the next non-blank line as its value
+        private boolean hasPendingKey;
+
+        private String pendingKey;
+
+        // Blank lines right after a key:value line belong to that match
+        private boolean afterKeyValue;
+
+        private final Deque<Candidate> organizationLines = new ArrayDeque<>();
+
+        private boolean organizationResolved;
+
+        private String templateOrganization;
+
+        private final Deque<Candidate> classificationLines = new ArrayDeque<>();
+
+        private boolean classificationResolved;
+
+        private String templateClassification;
+
+        private String templateHash;
+
+        private final ThreatSentence threatSentence = new ThreatSentence();
+
+        private final BehaviorBlock behaviorBlock = new BehaviorBlock();
+
+        private final Matcher hashMatcher = HASH_PATTERN.matcher(text);
+
+        private String firstHash;
+
+        private Session(long budgetNanos) {
+            this.budgetNanos = budgetNanos;
+        }
+
+        public void feed(CharSequence chunk) {
+            if (stopped || chunk == null) {
+                return;
+            }
+
+            int from = 0;
+            if (!started) {
+                while (from < chunk.length() && chunk.charAt(from) <= ' ') {
+                    from++;
+                }
+                if (from == chunk.length()) {
+                    return;
+                }
+                started = true;
+            }
+            text.append(chunk, from, chunk.length());
+
+            feedStartedAt = System.nanoTime();
+            for (int i = scanned; i < text.length() && !stopped; i++) {
+                char c = text.charAt(i);
+                threatSentence.accept(i, c);
+                behaviorBlock.accept(i, c);
+                if (c == '\n') {
+                    line(lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            scanned = text.length();
+            spentNanos += System.nanoTime() - feedStartedAt;
+        }
+
+        public MalwareAnalysis finish() {
+            // Trailing whitespace is ignored as well
+            int end = text.length();
+            while (end > 0 && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+
+            if (!stopped) {
+                feedStartedAt = System.nanoTime();
+                line(lineStart, Math.max(lineStart, end));
+            }
+            if (timedOut) {
+                log.warn("Parsing stopped after {} ms at line {}, returning partial analysis", timeBudgetMs,
+                    lineCount);
+                end = Math.min(end, lineStart);
+            }
+            behaviorBlock.finish(end);
+            while (!organizationLines.isEmpty()) {
+                resolveOrganization(organizationLines.pollFirst(), end);
+            }
+            while (!classificationLines.isEmpty()) {
+                resolveClassification(classificationLines.pollFirst(), end);
+            }
+
+            return resolve();
+        }
+
+        private MalwareAnalysis resolve() {
+            String organization = securityOrganization;
+            if (organization == null) {
+                organization = templateOrganization;
+            }
+
+            var classification = threatClassification;
+            var hash = sampleHash;
+            if ((classification == null || hash == null) && classificationResolved) {
+                if (classification == null) {
+                    classification = parseClassification(templateClassification).orElse(null);
+                }
+                if (hash == null) {
+                    // first try strict md5/sha256 in hashRaw, otherwise keep raw text
+                    hash = extractHash(templateHash).orElse(templateHash);
+                }
+            }
+
+            String malware = malwareName;
+            if (malware == null) {
+                malware = cleanInline(threatSentence.result());
+            }
+
+            String behavior = behaviorDescription;
+            String analyst = analystFullName;
+            if ((behavior == null || analyst == null) && behaviorBlock.matchedWithAnalyst()) {
+                if (behavior == null) {
+                    behavior = cleanMultiline(behaviorBlock.description());
+                }
+                if (analyst == null) {
+                    analyst = cleanInline(behaviorBlock.analyst());
+                }
+            }
+
+            // Fallback: if still missing behavior, capture until "Potpis"
+            if (behavior == null) {
+                behavior = cleanMultiline(behaviorBlock.descriptionUntilSignature());
+            }
+
+            if (hash == null) {
+                hash = firstHash;
+            }
+
+            return MalwareAnalysis.builder()
+                    .analystFullName(analyst)
+                    .securityOrganization(organization)
+                    .malwareName(malware)
+                    .behaviorDescription(behavior)
+                    .threatClassification(classification)
+                    .sampleHash(hash)
+                    .build();
+        }
+
+        private void line(int start, int end) {
+            boolean blank = firstNonWhitespace(text, start, end) == end;
 
-        // 1) Try KEY:VALUE parsing (works for your simple test PDFs)
-        Matcher m = KEY_VALUE_LINE.matcher(extractedText);
-        while (m.find()) {
-            String rawKey = m.group(1);
-            String rawValue = m.group(2);
+            keyValueLine(start, end, blank);
+            if (stopped) {
+                return;
+            }
 
-            String normalizedKey = normalizeKey(rawKey);
-            String canonical = KEY_ALIASES.get(normalizedKey);
-            if (canonical == null) continue;
+            if (!blank) {
+                advance(organizationLines, end, this::resolveOrganization);
+                advance(classificationLines, end, this::resolveClassification);
+                templateLine(start, end);
+
+                if (firstHash == null && hashMatcher.region(start, end).find()) {
+                    firstHash = hashMatcher.group(1);
+                }
+            }
 
-            String value = normalizeValue(rawValue);
-            if (value.isBlank()) continue;
+            if (++lineCount % CLOCK_INTERVAL == 0 && spentNanos + System.nanoTime() - feedStartedAt > budgetNanos) {
+                timedOut = true;
+                stopped = true;
+            }
+        }
+
+        private void keyValueLine(int start, int end, boolean blank) {
+            if (hasPendingKey) {
+                if (!blank) {
+                    hasPendingKey = false;
+                    afterKeyValue = true;
+                    acceptKeyValue(pendingKey, start, end);
+                }
+                return;
+            }
+
+            if (blank) {
+                // A whitespace-only line can itself act as a (never matching) key
+                if (!afterKeyValue && !hasCarriedKey && end - start >= 2) {
+                    hasCarriedKey = true;
+                    carriedKey = null;
+                }
+                return;
+            }
+            afterKeyValue = false;
+
+            int colon = indexOf(text, ':', start, end);
+            if (colon < 0) {
+                hasCarriedKey = end - start >= 2 && trimmedLength(text, start, end) <= MAX_KEY_LENGTH;
+                carriedKey = hasCarriedKey ? ALIASES.find(text, start, end) : null;
+                return;
+            }
+
+            String key;
+            if (hasCarriedKey && firstNonWhitespace(text, start, colon) == colon) {
+                key = carriedKey;
+            } else if (colon - start >= 2 && trimmedLength(text, start, colon) <= MAX_KEY_LENGTH) {
+                key = ALIASES.find(text, start, colon);
+            } else {
+                hasCarriedKey = false;
+                return;
+            }
+            hasCarriedKey = false;
+
+            if (firstNonWhitespace(text, colon + 1, end) == end) {
+                hasPendingKey = true;
+                pendingKey = key;
+                return;
+            }
+            afterKeyValue = true;
+            acceptKeyValue(key, colon + 1, end);
+        }
+
+        private void acceptKeyValue(String canonical, int from, int to) {
+            if (canonical == null) {
+                return;
+            }
+
+            String value = normalizeValue(text.substring(from, to));
+            if (value.isBlank()) {
+                return;
+            }
 
             switch (canonical) {
                 case "analystFullName" -> {
@@ -160,77 +432,670 @@ public class MalwareAnalysisParser {
                 }
                 default -> { /* ignore */ }
             }
+
+            // Key:value results always win, so nothing further down can change the outcome
+            if (analystFullName != null && securityOrganization != null && malwareName != null
+                    && behaviorDescription != null && threatClassification != null && sampleHash != null) {
+                stopped = true;
+            }
+        }
+
+        private void templateLine(int start, int end) {
+            int first = firstNonWhitespace(text, start, end);
+            if (!organizationResolved && securityOrganization == null
+                    && startsWithIgnoreCase(text, first, end, ORG_LINE_PREFIX)) {
+                organizationLines.addLast(new Candidate(start, ORG_LOOKAHEAD_LINES));
+            }
+            if (!classificationResolved && (threatClassification == null || sampleHash == null)
+                    && startsWithIgnoreCase(text, first, end, CLASS_LINE_PREFIX)) {
+                classificationLines.addLast(new Candidate(start, CLASS_LOOKAHEAD_LINES));
+            }
+        }
+
+        // Candidates are checked in document order once every line their pattern can span has arrived
+        private void advance(Deque<Candidate> candidates, int lineEnd, CandidateResolver resolver) {
+            for (var candidate : candidates) {
+                candidate.remainingLines--;
+            }
+            while (!candidates.isEmpty() && candidates.peekFirst().remainingLines <= 0) {
+                resolver.resolve(candidates.pollFirst(), lineEnd);
+            }
+        }
+
+        private void resolveOrganization(Candidate candidate, int windowEnd) {
+            if (organizationResolved) {
+                return;
+            }
+
+            var matcher = window(ORG_PATTERN, candidate, windowEnd);
+            if (matcher.lookingAt()) {
+                organizationResolved = true;
+                templateOrganization = matcher.group(1).trim();
+                organizationLines.clear();
+            }
         }
 
-        // 2) TEMPLATE parsing (fill missing fields based on your image layout)
+        private void resolveClassification(Candidate candidate, int windowEnd) {
+            if (classificationResolved) {
+                return;
+            }
+
+            var matcher = window(CLASS_AND_HASH_PATTERN, candidate, windowEnd);
+            if (matcher.lookingAt()) {
+                classificationResolved = true;
+                templateClassification = normalizeValue(matcher.group(1));
+                templateHash = normalizeValue(matcher.group(2));
+                classificationLines.clear();
+            }
+        }
 
-        if (securityOrganization == null) {
-            securityOrganization = firstGroup(ORG_PATTERN, extractedText).map(String::trim).orElse(null);
+        private Matcher window(Pattern pattern, Candidate candidate, int windowEnd) {
+            return pattern.matcher(text)
+                    .region(candidate.start, Math.max(candidate.start, windowEnd))
+                    .useAnchoringBounds(true);
         }
 
-        if (threatClassification == null || sampleHash == null) {
-            Matcher ch = CLASS_AND_HASH_PATTERN.matcher(extractedText);
-            if (ch.find()) {
-                String clsRaw = normalizeValue(ch.group(1));
-                String hashRaw = normalizeValue(ch.group(2));
+        // "ukazuje\\s+na\\s+(.+?)\\s*\\.\\s*Opis\\s+pona", case-insensitive incl. Unicode case folding
+        private final class ThreatSentence {
+
+            private static final int SEEK = 0;
+            private static final int AFTER_ANCHOR = 1;
+            private static final int BEFORE_NA = 2;
+            private static final int IN_NA = 3;
+            private static final int AFTER_NA = 4;
+            private static final int BEFORE_GROUP = 5;
+            private static final int IN_GROUP = 6;
+            private static final int DONE = 7;
+
+            private static final int END_IDLE = 0;
+            private static final int END_AFTER_DOT = 1;
+            private static final int END_IN_OPIS = 2;
+            private static final int END_AFTER_OPIS = 3;
+            private static final int END_BEFORE_PONA = 4;
+            private static final int END_IN_PONA = 5;
+
+            private final LiteralMatcher anchor = new LiteralMatcher(THREAT_ANCHOR, true);
+
+            private int state = SEEK;
+
+            private int groupStart;
 
-                if (threatClassification == null) {
-                    threatClassification = parseClassification(clsRaw).orElse(null);
+            private int leadingWhitespace;
+
+            private int endState = END_IDLE;
+
+            private int literalIndex;
+
+            private int candidateEnd;
+
+            private boolean candidateAtGroupStart;
+
+            private boolean endsAtGroupStart;
+
+            private int lastNonWhitespaceEnd;
+
+            private int groupEnd = -1;
+
+            void accept(int i, char c) {
+                switch (state) {
+                    case SEEK -> {
+                        if (anchor.accept(c)) {
+                            state = AFTER_ANCHOR;
+                        }
+                    }
+                    case AFTER_ANCHOR -> state = isWhitespace(c) ? BEFORE_NA : reset(c);
+                    case BEFORE_NA -> {
+                        if (foldUnicode(c) == 'n') {
+                            state = IN_NA;
+                        } else if (!isWhitespace(c)) {
+                            state = reset(c);
+                        }
+                    }
+                    case IN_NA -> state = foldUnicode(c) == 'a' ? AFTER_NA : reset(c);
+                    case AFTER_NA -> {
+                        if (isWhitespace(c)) {
+                            leadingWhitespace = 1;
+                            state = BEFORE_GROUP;
+                        } else {
+                            state = reset(c);
+                        }
+                    }
+                    case BEFORE_GROUP -> {
+                        if (isWhitespace(c)) {
+                            leadingWhitespace++;
+                        } else {
+                            groupStart = i;
+                            lastNonWhitespaceEnd = i;
+                            state = IN_GROUP;
+                            groupChar(i, c);
+                        }
+                    }
+                    case IN_GROUP -> groupChar(i, c);
+                    default -> { /* done */ }
                 }
+            }
 
-                if (sampleHash == null) {
-                    // first try strict md5/sha256 in hashRaw, otherwise keep raw text
-                    sampleHash = extractHash(hashRaw).orElse(hashRaw);
+            private int reset(char c) {
+                anchor.reset();
+                anchor.accept(c);
+                return SEEK;
+            }
+
+            // The group ends before the first "\\s*.\\s*opis\\s+pona" that starts after its first character
+            private void groupChar(int i, char c) {
+                if (!step(i, c)) {
+                    endState = END_IDLE;
+                    step(i, c);
+                }
+                if (!isWhitespace(c)) {
+                    lastNonWhitespaceEnd = i + 1;
+                }
+            }
+
+            private boolean step(int i, char c) {
+                char folded = foldUnicode(c);
+                switch (endState) {
+                    case END_IDLE -> {
+                        if (c == '.') {
+                            candidateAtGroupStart = i == groupStart;
+                            candidateEnd = lastNonWhitespaceEnd;
+                            endState = END_AFTER_DOT;
+                        }
+                        return true;
+                    }
+                    case END_AFTER_DOT -> {
+                        if (folded == THREAT_END.charAt(0)) {
+                            literalIndex = 1;
+                            endState = END_IN_OPIS;
+                            return true;
+                        }
+                        return isWhitespace(c);
+                    }
+                    case END_IN_OPIS -> {
+                        if (folded != THREAT_END.charAt(literalIndex)) {
+                            return false;
+                        }
+                        if (++literalIndex == THREAT_END.length()) {
+                            endState = END_AFTER_OPIS;
+                        }
+                        return true;
+                    }
+                    case END_AFTER_OPIS -> {
+                        endState = END_BEFORE_PONA;
+                        return isWhitespace(c);
+                    }
+                    case END_BEFORE_PONA -> {
+                        if (folded == THREAT_END_NEXT.charAt(0)) {
+                            literalIndex = 1;
+                            endState = END_IN_PONA;
+                            return true;
+                        }
+                        return isWhitespace(c);
+                    }
+                    case END_IN_PONA -> {
+                        if (folded != THREAT_END_NEXT.charAt(literalIndex)) {
+                            return false;
+                        }
+                        if (++literalIndex == THREAT_END_NEXT.length()) {
+                            if (candidateAtGroupStart) {
+                                // Only usable if the group may start one whitespace earlier, see result()
+                                endsAtGroupStart = true;
+                                endState = END_IDLE;
+                            } else {
+                                groupEnd = candidateEnd;
+                                state = DONE;
+                            }
+                        }
+                        return true;
+                    }
+                    default -> {
+                        return true;
+                    }
+                }
+            }
+
+            String result() {
+                if (groupEnd >= 0) {
+                    return text.substring(groupStart, groupEnd);
+                }
+                // Backtracking would hand a single whitespace character to the group
+                if (endsAtGroupStart && leadingWhitespace >= 2) {
+                    return text.substring(groupStart - 1, groupStart);
+                }
+                return null;
+            }
+        }
+
+        // "malvera\\s*/\\s*pretnje\\s*:\\s*(.+?)\\s*\\n\\s*(Name Surname)\\s*\\n\\s*Potpis\\b", and the
+        // fallback that ends the description at "\\n\\s*Potpis\\b" or the end of the text.
+        private final class BehaviorBlock {
+
+            private static final int SEEK = 0;
+            private static final int BEFORE_SLASH = 1;
+            private static final int BEFORE_PRETNJE = 2;
+            private static final int IN_PRETNJE = 3;
+            private static final int BEFORE_COLON = 4;
+            private static final int BEFORE_GROUP = 5;
+            private static final int IN_GROUP = 6;
+            private static final int DONE = 7;
+
+            private final LiteralMatcher anchor = new LiteralMatcher(BEHAVIOR_ANCHOR, false);
+
+            private int state = SEEK;
+
+            private int literalIndex;
+
+            private int leadingWhitespaceStart;
+
+            private int leadingLastNewline = -1;
+
+            private int groupStart = -1;
+
+            // Whitespace-separated tokens after the group start
+            private boolean inToken;
+
+            private int tokenStart;
+
+            private int tokenCount;
+
+            private boolean newlineBefore;
+
+            private int firstNewlineBefore = -1;
+
+            private boolean tokenNewlineBefore;
+
+            private int tokenFirstNewlineBefore;
+
+            // Last three completed tokens, most recent first
+            private final int[] starts = new int[3];
+
+            private final int[] ends = new int[3];
+
+            private final boolean[] names = new boolean[3];
+
+            private final boolean[] newlines = new boolean[3];
+
+            private int descriptionEnd = -1;
+
+            private int analystStart;
+
+            private int analystEnd;
+
+            private int signatureNewline = -1;
+
+            private boolean analystRightAfterAnchor;
+
+            private int textEnd;
+
+            void accept(int i, char c) {
+                switch (state) {
+                    case SEEK -> {
+                        if (anchor.accept(c)) {
+                            state = BEFORE_SLASH;
+                        }
+                    }
+                    case BEFORE_SLASH -> {
+                        if (c == '/') {
+                            state = BEFORE_PRETNJE;
+                        } else if (!isWhitespace(c)) {
+                            state = reset(c);
+                        }
+                    }
+                    case BEFORE_PRETNJE -> {
+                        if (foldAscii(c) == BEHAVIOR_ANCHOR_NEXT.charAt(0)) {
+                            literalIndex = 1;
+                            state = IN_PRETNJE;
+                        } else if (!isWhitespace(c)) {
+                            state = reset(c);
+                        }
+                    }
+                    case IN_PRETNJE -> {
+                        if (foldAscii(c) != BEHAVIOR_ANCHOR_NEXT.charAt(literalIndex)) {
+                            state = reset(c);
+                        } else if (++literalIndex == BEHAVIOR_ANCHOR_NEXT.length()) {
+                            state = BEFORE_COLON;
+                        }
+                    }
+                    case BEFORE_COLON -> {
+                        if (c == ':') {
+                            leadingWhitespaceStart = i + 1;
+                            state = BEFORE_GROUP;
+                        } else if (!isWhitespace(c)) {
+                            state = reset(c);
+                        }
+                    }
+                    case BEFORE_GROUP -> {
+                        if (!isWhitespace(c)) {
+                            groupStart = i;
+                            state = IN_GROUP;
+                        }
+                        groupChar(i, c);
+                    }
+                    case IN_GROUP -> groupChar(i, c);
+                    default -> { /* done */ }
+                }
+            }
+
+            private int reset(char c) {
+                anchor.reset();
+                anchor.accept(c);
+                return SEEK;
+            }
+
+            private void groupChar(int i, char c) {
+                if (!isWhitespace(c)) {
+                    if (!inToken) {
+                        inToken = true;
+                        tokenStart = i;
+                        tokenNewlineBefore = newlineBefore;
+                        tokenFirstNewlineBefore = firstNewlineBefore;
+                    }
+                    return;
+                }
+
+                if (inToken) {
+                    token(tokenStart, i);
+                    newlineBefore = false;
+                    firstNewlineBefore = -1;
+                }
+                if (c == '\n') {
+                    if (state == BEFORE_GROUP) {
+                        leadingLastNewline = i;
+                    }
+                    if (!newlineBefore) {
+                        firstNewlineBefore = i;
+                    }
+                    newlineBefore = true;
+                }
+            }
+
+            private void token(int start, int end) {
+                inToken = false;
+                boolean name = isName(start, end);
+
+                if (tokenNewlineBefore && tokenCount > 0 && isSignature(start, end)) {
+                    if (signatureNewline < 0) {
+                        signatureNewline = tokenFirstNewlineBefore;
+                    }
+                    // <description> \n <Name> <Surname> \n Potpis
+                    if (tokenCount >= 3 && names[0] && names[1] && newlines[1]) {
+                        descriptionEnd = ends[2];
+                        analystStart = starts[1];
+                        analystEnd = ends[0];
+                        state = DONE;
+                        return;
+                    }
+                    // "malvera/pretnje: \n\n Name Surname \n Potpis", only used if nothing else matches
+                    if (tokenCount == 2 && names[0] && names[1] && newlines[1]
+                            && leadingLastNewline > leadingWhitespaceStart) {
+                        analystRightAfterAnchor = true;
+                        analystStart = starts[1];
+                        analystEnd = ends[0];
+                    }
+                }
+
+                for (int k = 2; k > 0; k--) {
+                    starts[k] = starts[k - 1];
+                    ends[k] = ends[k - 1];
+                    names[k] = names[k - 1];
+                    newlines[k] = newlines[k - 1];
+                }
+                starts[0] = start;
+                ends[0] = end;
+                names[0] = name;
+                newlines[0] = tokenNewlineBefore;
+                tokenCount++;
+            }
+
+            void finish(int end) {
+                textEnd = end;
+                if (state == IN_GROUP && inToken && tokenStart < end) {
+                    token(tokenStart, end);
+                }
+            }
+
+            boolean matchedWithAnalyst() {
+                return descriptionEnd >= 0 || analystRightAfterAnchor;
+            }
+
+            String description() {
+                if (descriptionEnd >= 0) {
+                    return text.substring(groupStart, descriptionEnd);
+                }
+                // Backtracking gives the group the whitespace character before the last newline
+                return text.substring(leadingLastNewline - 1, leadingLastNewline);
+            }
+
+            String analyst() {
+                return text.substring(analystStart, analystEnd);
+            }
+
+            String descriptionUntilSignature() {
+                if (groupStart < 0 || groupStart >= textEnd) {
+                    return null;
+                }
+                return text.substring(groupStart, signatureNewline >= 0 ? signatureNewline : textEnd);
+            }
+
+            private boolean isName(int start, int end) {
+                if (end - start < 2) {
+                    return false;
+                }
+                char first = text.charAt(start);
+                if (!(first >= 'A' && first <= 'Z' || first >= 'a' && first <= 'z'
+                        || NAME_INITIALS.indexOf(first) >= 0)) {
+                    return false;
+                }
+                for (int i = start + 1; i < end; i++) {
+                    char c = text.charAt(i);
+                    if (!Character.isLetter(c) && c != '.' && c != '\'' && c != '-') {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private boolean isSignature(int start, int end) {
+                int length = SIGNATURE.length();
+                if (end - start < length || !startsWithIgnoreCase(text, start, end, SIGNATURE)) {
+                    return false;
                 }
+                return end - start == length || !isWordChar(text.charAt(start + length));
             }
         }
+    }
+
+    private interface CandidateResolver {
+
+        void resolve(Candidate candidate, int windowEnd);
+    }
+
+    private static final class Candidate {
+
+        private final int start;
+
+        // Non-blank lines still needed after the candidate line
+        private int remainingLines;
+
+        private Candidate(int start, int remainingLines) {
+            this.start = start;
+            this.remainingLines = remainingLines;
+        }
+    }
+
+    // Streaming KMP search for a lower-case literal
+    private static final class LiteralMatcher {
+
+        private final String literal;
+
+        private final int[] fallback;
+
+        private final boolean unicodeCase;
+
+        private int matched;
+
+        private LiteralMatcher(String literal, boolean unicodeCase) {
+            this.literal = literal;
+            this.unicodeCase = unicodeCase;
+            this.fallback = new int[literal.length()];
+            for (int i = 1, k = 0; i < literal.length(); i++) {
+                while (k > 0 && literal.charAt(i) != literal.charAt(k)) {
+                    k = fallback[k - 1];
+                }
+                if (literal.charAt(i) == literal.charAt(k)) {
+                    k++;
+                }
+                fallback[i] = k;
+            }
+        }
+
+        boolean accept(char c) {
+            char folded = unicodeCase ? foldUnicode(c) : foldAscii(c);
+            while (matched > 0 && literal.charAt(matched) != folded) {
+                matched = fallback[matched - 1];
+            }
+            if (literal.charAt(matched) == folded) {
+                matched++;
+            }
+            if (matched == literal.length()) {
+                matched = 0;
+                return true;
+            }
+            return false;
+        }
+
+        void reset() {
+            matched = 0;
+        }
+    }
 
-        if (malwareName == null) {
-            malwareName = firstGroup(THREAT_IN_SENTENCE_PATTERN, extractedText)
-                    .map(this::cleanInline)
-                    .orElse(null);
+    // Lookup of normalized keys (trimmed, lower-cased, whitespace runs collapsed) without building strings
+    private static final class AliasTrie {
+
+        private char[] labels = new char[0];
+
+        private AliasTrie[] children = new AliasTrie[0];
+
+        private String canonical;
+
+        static AliasTrie of(Map<String, String> aliases) {
+            var root = new AliasTrie();
+            aliases.forEach((alias, canonical) -> {
+                var node = root;
+                for (int i = 0; i < alias.length(); i++) {
+                    node = node.childOrCreate(alias.charAt(i));
+                }
+                node.canonical = canonical;
+            });
+            return root;
         }
 
-        // Try to capture behavior + analyst together (best for your template PDFs)
-        if (behaviorDescription == null || analystFullName == null) {
-            Matcher ba = BEHAVIOR_AND_ANALYST_PATTERN.matcher(extractedText);
-            if (ba.find()) {
-                if (behaviorDescription == null) {
-                    behaviorDescription = cleanMultiline(ba.group(1));
+        String find(CharSequence text, int from, int to) {
+            while (from < to && text.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && text.charAt(to - 1) <= ' ') {
+                to--;
+            }
+
+            var node = this;
+            boolean inWhitespace = false;
+            for (int i = from; i < to && node != null; i++) {
+                char c = text.charAt(i);
+                if (isWhitespace(c)) {
+                    if (!inWhitespace) {
+                        node = node.child(' ');
+                    }
+                    inWhitespace = true;
+                    continue;
                 }
-                if (analystFullName == null) {
-                    analystFullName = cleanInline(ba.group(2));
+                inWhitespace = false;
+                // Lower-cases to two chars as a String, none of the aliases contain it
+                if (c == 'İ') {
+                    return null;
                 }
+                node = node.child(Character.toLowerCase(c));
             }
+            return node == null ? null : node.canonical;
         }
 
-        // Fallback: if still missing behavior, capture until "Potpis"
-        if (behaviorDescription == null) {
-            behaviorDescription = firstGroup(BEHAVIOR_BLOCK_FALLBACK_PATTERN, extractedText)
-                    .map(this::cleanMultiline)
-                    .orElse(null);
+        private AliasTrie child(char label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
         }
 
-        // 3) Global fallback hash scan (if still missing)
-        if (sampleHash == null) {
-            sampleHash = extractHash(extractedText).orElse(null);
+        private AliasTrie childOrCreate(char label) {
+            var existing = child(label);
+            if (existing != null) {
+                return existing;
+            }
+            var created = new AliasTrie();
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            labels[labels.length - 1] = label;
+            children[children.length - 1] = created;
+            return created;
         }
+    }
 
-        return MalwareAnalysis.builder()
-                .analystFullName(analystFullName)
-                .securityOrganization(securityOrganization)
-                .malwareName(malwareName)
-                .behaviorDescription(behaviorDescription)
-                .threatClassification(threatClassification)
-                .sampleHash(sampleHash)
-                .build();
+    // Same set as the regex \\s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
-    private static String normalizeKey(String key) {
-        return key == null ? "" : key
-                .trim()
-                .toLowerCase(Locale.ROOT)
-                .replaceAll("\\s+", " ");
+    // Same rule as the regex \\b uses
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    // (?i) without UNICODE_CASE only folds ASCII letters
+    private static char foldAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static char foldUnicode(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence text, int from, int to, String lowerCasePrefix) {
+        if (to - from < lowerCasePrefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCasePrefix.length(); i++) {
+            if (foldAscii(text.charAt(from + i)) != lowerCasePrefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstNonWhitespace(CharSequence text, int from, int to) {
+        while (from < to && isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    // Length between the first and last non-whitespace character
+    private static int trimmedLength(CharSequence text, int from, int to) {
+        from = firstNonWhitespace(text, from, to);
+        while (to > from && isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        return to - from;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private static String normalizeValue(String value) {
@@ -239,18 +1104,12 @@ public class MalwareAnalysisParser {
                 .replaceAll("\\s+", " ");
     }
 
-    private Optional<String> firstGroup(Pattern pattern, String text) {
-        Matcher mm = pattern.matcher(text);
-        if (mm.find()) return Optional.ofNullable(mm.group(1));
-        return Optional.empty();
-    }
-
-    private String cleanInline(String s) {
+    private static String cleanInline(String s) {
         if (s == null) return null;
         return s.replaceAll("[<>]", "").trim();
     }
 
-    private String cleanMultiline(String s) {
+    private static String cleanMultiline(String s) {
         if (s == null) return null;
         // keep line breaks but normalize whitespace
         String cleaned = s.replaceAll("\\r", "").trim();
@@ -259,6 +1118,11 @@ public class MalwareAnalysisParser {
         return cleaned;
     }
 
+    // Whole input is a single MD5 or SHA-256 hex digest
+    public static boolean isHash(String text) {
+        return text != null && HASH_PATTERN.matcher(text.trim()).matches();
+    }
+
     private static Optional<String> extractHash(String text) {
         if (text == null) return Optional.empty();
         Matcher hm = HASH_PATTERN.matcher(text);
@@ -266,7 +1130,7 @@ public class MalwareAnalysisParser {
         return Optional.empty();
     }
 
-    private static Optional<ThreatClassification> parseClassification(String input) {
+    public static Optional<ThreatClassification> parseClassification(String input) {
         if (input == null) return Optional.empty();
         String v = input.trim().toLowerCase(Locale.ROOT);
 
@@ -278,4 +1142,4 @@ public class MalwareAnalysisParser {
             default -> Optional.empty();
         };
     }
-}
\ No newline at end of file
+}
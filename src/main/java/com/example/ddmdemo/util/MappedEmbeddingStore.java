@@ -0,0 +1,182 @@
+package com.example.ddmdemo.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+// Append-only file of fixed-size records: a 32-byte key followed by the vector as little-endian floats.
+// Records are mapped into memory in segments, so reads are plain memory accesses.
+@Slf4j
+public class MappedEmbeddingStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x454D4231;
+
+    // magic, dimensions, record count, reserved
+    private static final int HEADER_BYTES = 16;
+
+    private static final int KEY_BYTES = 32;
+
+    private static final int RECORDS_PER_SEGMENT = 16_384;
+
+    private final FileChannel channel;
+
+    private final int dimensions;
+
+    private final int recordBytes;
+
+    private final long maxRecords;
+
+    private final MappedByteBuffer header;
+
+    private final Map<EmbeddingKey, Integer> slots = new ConcurrentHashMap<>();
+
+    // Replaced (never modified) when the file grows by another segment
+    private volatile Segment[] segments = new Segment[0];
+
+    private int recordCount;
+
+    private boolean fullLogged;
+
+    public MappedEmbeddingStore(Path file, int dimensions, long maxRecords) throws IOException {
+        this.dimensions = dimensions;
+        this.recordBytes = KEY_BYTES + dimensions * Float.BYTES;
+        this.maxRecords = maxRecords;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getInt(0) != MAGIC || header.getInt(4) != dimensions) {
+            if (header.getInt(0) != 0) {
+                log.warn("Embedding store {} has an incompatible layout, starting with an empty store", file);
+            }
+            channel.truncate(HEADER_BYTES);
+            header.putInt(0, MAGIC);
+            header.putInt(4, dimensions);
+            header.putInt(8, 0);
+        }
+
+        recordCount = header.getInt(8);
+        for (int slot = 0; slot < recordCount; slot++) {
+            slots.put(readKey(slot), slot);
+        }
+        log.info("Opened embedding store {} with {} record(s)", file, recordCount);
+    }
+
+    public float[] get(EmbeddingKey key) {
+        var slot = slots.get(key);
+        if (slot == null) {
+            return null;
+        }
+
+        var vector = new float[dimensions];
+        var segment = segments[slot / RECORDS_PER_SEGMENT];
+        segment.floats.get(floatIndex(slot), vector);
+        return vector;
+    }
+
+    public synchronized void put(EmbeddingKey key, float[] vector) throws IOException {
+        if (vector.length != dimensions || slots.containsKey(key)) {
+            return;
+        }
+        if (recordCount >= maxRecords) {
+            if (!fullLogged) {
+                log.warn("Embedding store reached its limit of {} records, new vectors stay in memory only",
+                    maxRecords);
+                fullLogged = true;
+            }
+            return;
+        }
+
+        int slot = recordCount;
+        var segment = segmentFor(slot);
+        int offset = (slot % RECORDS_PER_SEGMENT) * recordBytes;
+        segment.bytes.putLong(offset, key.word0());
+        segment.bytes.putLong(offset + 8, key.word1());
+        segment.bytes.putLong(offset + 16, key.word2());
+        segment.bytes.putLong(offset + 24, key.word3());
+        segment.floats.put(floatIndex(slot), vector);
+
+        recordCount++;
+        header.putInt(8, recordCount);
+        // Published only after the record is complete, so readers never see a partial vector
+        slots.put(key, slot);
+    }
+
+    // Up to limit vectors, evenly spread over the file
+    public List<float[]> sample(int limit) {
+        int count = slots.size();
+        var sample = new ArrayList<float[]>(Math.min(limit, count));
+        if (count == 0 || limit <= 0) {
+            return sample;
+        }
+
+        double step = Math.max(1.0, (double) count / limit);
+        for (double slot = 0; slot < count && sample.size() < limit; slot += step) {
+            var vector = new float[dimensions];
+            segments[(int) slot / RECORDS_PER_SEGMENT].floats.get(floatIndex((int) slot), vector);
+            sample.add(vector);
+        }
+        return sample;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (var segment : segments) {
+            segment.bytes.force();
+        }
+        header.force();
+        channel.close();
+    }
+
+    private EmbeddingKey readKey(int slot) throws IOException {
+        var segment = segmentFor(slot);
+        int offset = (slot % RECORDS_PER_SEGMENT) * recordBytes;
+        return new EmbeddingKey(segment.bytes.getLong(offset), segment.bytes.getLong(offset + 8),
+            segment.bytes.getLong(offset + 16), segment.bytes.getLong(offset + 24));
+    }
+
+    private int floatIndex(int slot) {
+        return ((slot % RECORDS_PER_SEGMENT) * recordBytes + KEY_BYTES) / Float.BYTES;
+    }
+
+    private Segment segmentFor(int slot) throws IOException {
+        int index = slot / RECORDS_PER_SEGMENT;
+        var current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+
+        long segmentBytes = (long) RECORDS_PER_SEGMENT * recordBytes;
+        var bytes = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * segmentBytes, segmentBytes);
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        var segment = new Segment(bytes, bytes.asFloatBuffer());
+
+        var grown = Arrays.copyOf(current, index + 1);
+        grown[index] = segment;
+        segments = grown;
+        return segment;
+    }
+
+    private record Segment(MappedByteBuffer bytes, FloatBuffer floats) {
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.ddmdemo.util;
+
+import com.example.ddmdemo.model.NearDuplicate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// MinHash signatures over word shingles, bucketed by banded LSH: reports sharing any band are candidates,
+// and the share of equal signature slots estimates their Jaccard similarity. Lookups touch one bucket per
+// band, independent of how many reports are indexed. Signatures are appended to a log replayed on startup.
+@Component
+@Slf4j
+public class NearDuplicateIndex {
+
+    @Value("${near-duplicate.shingle-words:5}")
+    private int shingleWords;
+
+    @Value("${near-duplicate.bands:32}")
+    private int bands;
+
+    @Value("${near-duplicate.rows-per-band:4}")
+    private int rowsPerBand;
+
+    // Candidates below this estimate are dropped
+    @Value("${near-duplicate.min-similarity:0.7}")
+    private double minSimilarity;
+
+    @Value("${near-duplicate.max-candidates:10}")
+    private int maxCandidates;
+
+    @Value("${near-duplicate.log-file:near-duplicates/minhash.log}")
+    private Path logFile;
+
+    private long[] seeds;
+
+    private final Map<String, int[]> signatures = new HashMap<>();
+
+    private Map<Long, List<String>>[] buckets;
+
+    private DataOutputStream signatureLog;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    void open() throws IOException {
+        var random = new SplittableRandom(0x5EEDL);
+        seeds = new long[bands * rowsPerBand];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        buckets = new Map[bands];
+        for (int band = 0; band < bands; band++) {
+            buckets[band] = new HashMap<>();
+        }
+
+        replay();
+        if (logFile.getParent() != null) {
+            Files.createDirectories(logFile.getParent());
+        }
+        signatureLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        signatureLog.close();
+    }
+
+    // Null when the text has no words to shingle
+    public int[] signature(String text) {
+        var shingles = shingles(text);
+        if (shingles.length == 0) {
+            return null;
+        }
+
+        var signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                int value = (int) (mix(shingle ^ seeds[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    public synchronized List<NearDuplicate> findCandidates(int[] signature) {
+        var candidates = new LinkedHashSet<String>();
+        for (int band = 0; band < bands; band++) {
+            var bucket = buckets[band].get(bandKey(signature, band));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+
+        var nearDuplicates = new ArrayList<NearDuplicate>();
+        for (var candidate : candidates) {
+            double similarity = estimateJaccard(signature, signatures.get(candidate));
+            if (similarity >= minSimilarity) {
+                nearDuplicates.add(new NearDuplicate(candidate, similarity));
+            }
+        }
+        nearDuplicates.sort(Comparator.comparingDouble(NearDuplicate::similarity).reversed());
+        return nearDuplicates.size() > maxCandidates ? nearDuplicates.subList(0, maxCandidates) : nearDuplicates;
+    }
+
+    public synchronized void add(String fileName, int[] signature) {
+        put(fileName, signature);
+        try {
+            var encoded = fileName.getBytes(StandardCharsets.UTF_8);
+            signatureLog.writeShort(encoded.length);
+            signatureLog.write(encoded);
+            signatureLog.writeShort(signature.length);
+            for (int value : signature) {
+                signatureLog.writeInt(value);
+            }
+            signatureLog.flush();
+        } catch (IOException e) {
+            log.warn("Could not persist MinHash signature of {}", fileName, e);
+        }
+    }
+
+    public synchronized int size() {
+        return signatures.size();
+    }
+
+    private void put(String fileName, int[] signature) {
+        var previous = signatures.put(fileName, signature);
+        if (previous != null) {
+            for (int band = 0; band < bands; band++) {
+                var bucket = buckets[band].get(bandKey(previous, band));
+                if (bucket != null) {
+                    bucket.remove(fileName);
+                }
+            }
+        }
+        for (int band = 0; band < bands; band++) {
+            buckets[band].computeIfAbsent(bandKey(signature, band), key -> new ArrayList<>(1)).add(fileName);
+        }
+    }
+
+    // A record cut short by a crash is cut off the log, so records appended later are read back intact
+    private void replay() throws IOException {
+        long complete = 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (true) {
+                var encoded = new byte[in.readUnsignedShort()];
+                in.readFully(encoded);
+                var signature = new int[in.readUnsignedShort()];
+                for (int i = 0; i < signature.length; i++) {
+                    signature[i] = in.readInt();
+                }
+                complete += 2 * Short.BYTES + encoded.length + (long) signature.length * Integer.BYTES;
+                // Written with other band settings; these buckets would never match
+                if (signature.length == seeds.length) {
+                    put(new String(encoded, StandardCharsets.UTF_8), signature);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (EOFException e) {
+            // End of log, or a torn last record
+        }
+
+        try (var channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            if (channel.size() > complete) {
+                log.warn("Dropping {} byte(s) of a torn MinHash record at the end of {}",
+                    channel.size() - complete, logFile);
+                channel.truncate(complete);
+            }
+        }
+        log.info("Replayed {} MinHash signature(s) from {}", signatures.size(), logFile);
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++) {
+            key = key * 0x100000001B3L + signature[row];
+        }
+        return mix(key);
+    }
+
+    private static double estimateJaccard(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    // Hashes of every run of shingleWords consecutive lower-cased words
+    private long[] shingles(String text) {
+        var words = new ArrayList<Long>();
+        if (text != null) {
+            long hash = 0;
+            boolean inWord = false;
+            for (int i = 0; i < text.length(); ) {
+                int codePoint = text.codePointAt(i);
+                i += Character.charCount(codePoint);
+                if (Character.isLetterOrDigit(codePoint)) {
+                    hash = hash * 0x100000001B3L + Character.toLowerCase(codePoint);
+                    inWord = true;
+                } else if (inWord) {
+                    words.add(mix(hash));
+                    hash = 0;
+                    inWord = false;
+                }
+            }
+            if (inWord) {
+                words.add(mix(hash));
+            }
+        }
+
+        if (words.isEmpty()) {
+            return new long[0];
+        }
+        int width = Math.min(shingleWords, words.size());
+        var shingles = new long[words.size() - width + 1];
+        for (int start = 0; start < shingles.length; start++) {
+            long hash = 0;
+            for (int i = start; i < start + width; i++) {
+                hash = hash * 31 + words.get(i);
+            }
+            shingles[start] = mix(hash);
+        }
+        return shingles;
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93A5BFE4D8DL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
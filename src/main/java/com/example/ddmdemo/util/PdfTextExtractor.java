@@ -0,0 +1,130 @@
+package com.example.ddmdemo.util;
+
+import com.example.ddmdemo.exceptionhandling.exception.LoadingException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class PdfTextExtractor {
+
+    // Heap each open document may use before PDFBox spills to a scratch file
+    @Value("${ingest.pdf.max-main-memory-mb:16}")
+    private long maxMainMemoryMb;
+
+    @Value("${ingest.pdf.pages-per-task:16}")
+    private int pagesPerTask;
+
+    // 0 means "one worker per available core"
+    @Value("${ingest.pdf.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void startPool() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void stopPool() {
+        pool.shutdown();
+    }
+
+    public String extract(Path pdfFile) {
+        return extract(pdfFile, pageText -> { });
+    }
+
+    // Page ranges are stripped in parallel, but handed to pageSink strictly in page order
+    public String extract(Path pdfFile, Consumer<String> pageSink) {
+        int pageCount;
+        try (var document = load(pdfFile)) {
+            if (document.isEncrypted()) {
+                throw new LoadingException("PDF file is encrypted and cannot be parsed.");
+            }
+
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerTask) {
+                var text = strip(document, 1, pageCount);
+                pageSink.accept(text);
+                return requireText(text);
+            }
+        } catch (IOException e) {
+            throw new LoadingException("Error while trying to load PDF file content.");
+        }
+
+        var tasks = new ArrayList<ForkJoinTask<String>>();
+        for (int startPage = 1; startPage <= pageCount; startPage += pagesPerTask) {
+            int from = startPage;
+            int to = Math.min(startPage + pagesPerTask - 1, pageCount);
+            tasks.add(pool.submit(() -> stripRange(pdfFile, from, to)));
+        }
+
+        var text = new StringBuilder();
+        try {
+            for (var task : tasks) {
+                var rangeText = task.join();
+                pageSink.accept(rangeText);
+                text.append(rangeText);
+            }
+        } catch (RuntimeException e) {
+            cancel(tasks);
+            throw e;
+        }
+
+        log.debug("Extracted {} pages from {} in {} ranges", pageCount, pdfFile, tasks.size());
+        return requireText(text.toString());
+    }
+
+    // PDDocument is not thread-safe, so every range opens its own (file-backed) instance
+    private String stripRange(Path pdfFile, int from, int to) {
+        try (var document = load(pdfFile)) {
+            return strip(document, from, to);
+        } catch (IOException e) {
+            throw new LoadingException("Error while trying to load PDF file content.");
+        }
+    }
+
+    private PDDocument load(Path pdfFile) throws IOException {
+        return PDDocument.load(pdfFile.toFile(),
+            MemoryUsageSetting.setupMixed(maxMainMemoryMb * 1024 * 1024));
+    }
+
+    private static String strip(PDDocument document, int from, int to) throws IOException {
+        var stripper = new PDFTextStripper();
+
+        // Keep reading order more natural for many reports
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(from);
+        stripper.setEndPage(to);
+
+        return stripper.getText(document);
+    }
+
+    private static String requireText(String text) {
+        if (text == null || text.isBlank()) {
+            throw new LoadingException("PDF file contains no extractable text.");
+        }
+
+        return text.trim();
+    }
+
+    private static void cancel(List<ForkJoinTask<String>> tasks) {
+        for (var task : tasks) {
+            task.cancel(true);
+        }
+    }
+}
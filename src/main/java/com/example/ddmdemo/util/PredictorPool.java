@@ -0,0 +1,114 @@
+package com.example.ddmdemo.util;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.TranslateException;
+import com.example.ddmdemo.exceptionhandling.exception.EmbeddingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// DJL predictors are not thread-safe; each one is used by a single borrower at a time.
+public class PredictorPool<I, O> implements AutoCloseable {
+
+    private final List<Predictor<I, O>> predictors;
+
+    private final BlockingQueue<Predictor<I, O>> idle;
+
+    private final long borrowTimeoutMs;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Timer waitTimer;
+
+    private final Timer useTimer;
+
+    private final Counter timeouts;
+
+    public PredictorPool(ZooModel<I, O> model, int size, long borrowTimeoutMs, MeterRegistry meterRegistry) {
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.predictors = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            var predictor = model.newPredictor();
+            predictors.add(predictor);
+            idle.add(predictor);
+        }
+
+        Gauge.builder("embedding.predictor.pool.size", predictors, List::size)
+            .description("Predictors in the pool")
+            .register(meterRegistry);
+        Gauge.builder("embedding.predictor.pool.active", this, PredictorPool::active)
+            .description("Predictors currently borrowed")
+            .register(meterRegistry);
+        Gauge.builder("embedding.predictor.pool.waiting", waiting, AtomicInteger::get)
+            .description("Callers waiting for a free predictor")
+            .register(meterRegistry);
+        waitTimer = Timer.builder("embedding.predictor.pool.wait")
+            .description("Time spent waiting for a free predictor")
+            .register(meterRegistry);
+        useTimer = Timer.builder("embedding.predictor.pool.use")
+            .description("Time a predictor stays borrowed")
+            .register(meterRegistry);
+        timeouts = Counter.builder("embedding.predictor.pool.timeouts")
+            .description("Borrow attempts that gave up waiting")
+            .register(meterRegistry);
+    }
+
+    public <R> R execute(PredictorCall<I, O, R> call) throws TranslateException {
+        var predictor = borrow();
+        long borrowedAt = System.nanoTime();
+        try {
+            return call.apply(predictor);
+        } finally {
+            useTimer.record(System.nanoTime() - borrowedAt, TimeUnit.NANOSECONDS);
+            idle.add(predictor);
+        }
+    }
+
+    public int size() {
+        return predictors.size();
+    }
+
+    public int active() {
+        return predictors.size() - idle.size();
+    }
+
+    private Predictor<I, O> borrow() {
+        long waitStartedAt = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            var predictor = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            if (predictor == null) {
+                timeouts.increment();
+                throw new EmbeddingException("No embedding model instance became available within "
+                    + borrowTimeoutMs + " ms.");
+            }
+            return predictor;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingException("Interrupted while waiting for an embedding model instance.");
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - waitStartedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        predictors.forEach(Predictor::close);
+    }
+
+    @FunctionalInterface
+    public interface PredictorCall<I, O, R> {
+
+        R apply(Predictor<I, O> predictor) throws TranslateException;
+    }
+}
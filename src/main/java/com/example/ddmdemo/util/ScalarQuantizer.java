@@ -0,0 +1,94 @@
+package com.example.ddmdemo.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Maps floats in [min, max] linearly onto 256 levels, stored as signed bytes. Bounds come from a
+// calibration sample clipped to a confidence interval, so a few outliers do not waste levels.
+public final class ScalarQuantizer {
+
+    private static final int LEVELS = 255;
+
+    private final float min;
+
+    private final float max;
+
+    private final float scale;
+
+    // A code c stands for offset + c / scale
+    private final float offset;
+
+    public ScalarQuantizer(float min, float max) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException("Quantization range is empty: [" + min + ", " + max + "].");
+        }
+        this.min = min;
+        this.max = max;
+        this.scale = LEVELS / (max - min);
+        this.offset = min + 128 / scale;
+    }
+
+    public static ScalarQuantizer calibrate(List<float[]> sample, double confidence) {
+        int count = sample.stream().mapToInt(vector -> vector.length).sum();
+        if (count == 0) {
+            throw new IllegalArgumentException("Calibration sample is empty.");
+        }
+
+        var values = new float[count];
+        int position = 0;
+        for (var vector : sample) {
+            System.arraycopy(vector, 0, values, position, vector.length);
+            position += vector.length;
+        }
+        Arrays.sort(values);
+
+        double tail = (1.0 - confidence) / 2.0;
+        int low = (int) Math.floor(tail * (count - 1));
+        int high = (int) Math.ceil((1.0 - tail) * (count - 1));
+        return new ScalarQuantizer(values[low], values[high]);
+    }
+
+    public byte[] quantize(float[] vector) {
+        var quantized = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            float clamped = Math.max(min, Math.min(max, vector[i]));
+            quantized[i] = (byte) (Math.round((clamped - min) * scale) - 128);
+        }
+        return quantized;
+    }
+
+    public float[] dequantize(byte[] quantized) {
+        var vector = new float[quantized.length];
+        for (int i = 0; i < quantized.length; i++) {
+            vector[i] = min + (quantized[i] + 128) / scale;
+        }
+        return vector;
+    }
+
+    // The part of a dot product that depends on one of the vectors only. Worth computing once and
+    // keeping next to the codes, so scoring a pair is a single pass over the bytes.
+    public float correction(byte[] codes) {
+        long sum = 0;
+        for (byte code : codes) {
+            sum += code;
+        }
+        return offset / scale * sum + codes.length * offset * offset / 2;
+    }
+
+    // Dot product of the dequantized vectors, computed on the codes
+    public float dot(byte[] a, float correctionA, byte[] b, float correctionB) {
+        return correctionA + correctionB + VectorMath.dot(a, b) / (scale * scale);
+    }
+
+    public float dot(byte[] a, byte[] b) {
+        return dot(a, correction(a), b, correction(b));
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ddmdemo.util;
+
+final class ScalarVectorOps implements VectorOps {
+
+    // Four independent accumulators let the JIT overlap the multiply-adds
+    @Override
+    public float dot(float[] a, float[] b) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float sumOfSquares(float[] a) {
+        return dot(a, a);
+    }
+
+    @Override
+    public void scale(float[] a, float factor) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ddmdemo.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Needs --add-modules jdk.incubator.vector at compile time and at runtime
+final class SimdVectorOps implements VectorOps {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Both have the preferred shape, so one byte vector widens into four int vectors. A byte species a
+    // quarter as wide would not exist on 128-bit hardware.
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int PARTS = BYTE_SPECIES.length() / INT_SPECIES.length();
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        var sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            sum = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float sumOfSquares(float[] a) {
+        return dot(a, a);
+    }
+
+    @Override
+    public void scale(float[] a, float factor) {
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, a, i).mul(factor).intoArray(a, i);
+        }
+        for (; i < a.length; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b) {
+        var sum = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        int bound = BYTE_SPECIES.loopBound(a.length);
+        for (; i < bound; i += BYTE_SPECIES.length()) {
+            var bytesA = ByteVector.fromArray(BYTE_SPECIES, a, i);
+            var bytesB = ByteVector.fromArray(BYTE_SPECIES, b, i);
+            for (int part = 0; part < PARTS; part++) {
+                var wideA = (IntVector) bytesA.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                var wideB = (IntVector) bytesB.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                sum = sum.add(wideA.mul(wideB));
+            }
+        }
+
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.ddmdemo.util;
+
+import com.example.ddmdemo.exceptionhandling.exception.StorageException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+// An upload written to a temp file exactly once; every ingest stage reads that single copy.
+// The SHA-256 of the content is computed while spooling and doubles as its storage key.
+@Slf4j
+@Getter
+public class SpooledUpload implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String originalFilename;
+
+    private final Path path;
+
+    private final long size;
+
+    private final String sha256;
+
+    private SpooledUpload(String originalFilename, Path path, long size, String sha256) {
+        this.originalFilename = originalFilename;
+        this.path = path;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    public static SpooledUpload of(MultipartFile file) {
+        try (var in = file.getInputStream()) {
+            return of(in, file.getOriginalFilename());
+        } catch (IOException e) {
+            throw new StorageException("Failed to read uploaded file " + file.getOriginalFilename() + ".");
+        }
+    }
+
+    public static SpooledUpload of(InputStream in, String originalFilename) {
+        return of(in, originalFilename, Long.MAX_VALUE);
+    }
+
+    // Stops reading as soon as the content grows past maxBytes, so an oversized body never fills the disk
+    public static SpooledUpload of(InputStream in, String originalFilename, long maxBytes) {
+        Path path = null;
+        try {
+            path = Files.createTempFile("ddmdemo-upload-", ".part");
+            long size = 0;
+            var digest = MessageDigest.getInstance("SHA-256");
+            try (var source = Channels.newChannel(in);
+                 var target = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    if (size + buffer.position() > maxBytes) {
+                        throw new MaxUploadSizeExceededException(maxBytes);
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.rewind();
+                    while (buffer.hasRemaining()) {
+                        size += target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            return new SpooledUpload(originalFilename, path, size, HexFormat.of().formatHex(digest.digest()));
+        } catch (MaxUploadSizeExceededException e) {
+            deleteQuietly(path);
+            throw e;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            deleteQuietly(path);
+            throw new StorageException("Failed to spool uploaded file " + originalFilename + ".");
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    @Override
+    public void close() {
+        deleteQuietly(path);
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", path, e);
+        }
+    }
+}
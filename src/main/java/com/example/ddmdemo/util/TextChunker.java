@@ -0,0 +1,80 @@
+package com.example.ddmdemo.util;
+
+import com.example.ddmdemo.model.TextChunk;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Splits text into overlapping windows of whitespace-separated tokens. Windows stay well below the
+// 256 word pieces the embedding model reads, so nothing is silently truncated. Text past max-chunks
+// windows is not embedded at all; that is logged and counted in ingest.chunk.truncated.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TextChunker {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.chunk.window-tokens:100}")
+    private int windowTokens;
+
+    @Value("${ingest.chunk.overlap-tokens:20}")
+    private int overlapTokens;
+
+    @Value("${ingest.chunk.max-chunks:256}")
+    private int maxChunks;
+
+    public List<TextChunk> chunk(String source, String text) {
+        var chunks = new ArrayList<TextChunk>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+
+        var tokenStarts = new ArrayList<Integer>();
+        var tokenEnds = new ArrayList<Integer>();
+        tokenize(text, tokenStarts, tokenEnds);
+
+        int stride = Math.max(1, windowTokens - overlapTokens);
+        int covered = 0;
+        for (int first = 0; first < tokenStarts.size() && chunks.size() < maxChunks; first += stride) {
+            int last = Math.min(first + windowTokens, tokenStarts.size()) - 1;
+            int start = tokenStarts.get(first);
+            int end = tokenEnds.get(last);
+            chunks.add(new TextChunk(source, chunks.size(), start, end, text.substring(start, end)));
+            covered = last + 1;
+
+            if (last == tokenStarts.size() - 1) {
+                break;
+            }
+        }
+
+        if (covered < tokenStarts.size()) {
+            log.warn("{} text was cut at {} chunks, the last {} of {} token(s) are not searchable", source,
+                maxChunks, tokenStarts.size() - covered, tokenStarts.size());
+            meterRegistry.counter("ingest.chunk.truncated", "source", source).increment();
+        }
+        return chunks;
+    }
+
+    private static void tokenize(String text, List<Integer> starts, List<Integer> ends) {
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == text.length()) {
+                break;
+            }
+
+            starts.add(i);
+            while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            ends.add(i);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.ddmdemo.util;
+
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+// Allocation-free math over plain float[] embeddings. Uses the JDK Vector API when the
+// jdk.incubator.vector module is present and falls back to scalar loops otherwise.
+@Slf4j
+public final class VectorMath {
+
+    private static final VectorOps OPS = loadOps();
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        requireSameLength(a, b);
+        return OPS.dot(a, b);
+    }
+
+    public static int dot(byte[] a, byte[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException(
+                "Vectors have different dimensions: " + a.length + " and " + b.length + ".");
+        }
+        return OPS.dot(a, b);
+    }
+
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(OPS.sumOfSquares(a));
+    }
+
+    public static float cosine(float[] a, float[] b) {
+        requireSameLength(a, b);
+        float denominator = (float) Math.sqrt((double) OPS.sumOfSquares(a) * OPS.sumOfSquares(b));
+        return denominator == 0f ? 0f : OPS.dot(a, b) / denominator;
+    }
+
+    // Scales the vector to unit length in place; a zero vector is left as it is
+    public static float[] normalize(float[] a) {
+        float norm = norm(a);
+        if (norm > 0f) {
+            OPS.scale(a, 1f / norm);
+        }
+        return a;
+    }
+
+    // Indices of the k candidates most similar to the query, best first. Null candidates are skipped.
+    public static int[] topK(float[] query, float[][] candidates, int k) {
+        int limit = Math.min(k, candidates.length);
+        var indices = new int[limit];
+        var scores = new float[limit];
+        if (limit <= 0) {
+            return indices;
+        }
+
+        float queryNorm = norm(query);
+        int size = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            var candidate = candidates[i];
+            if (candidate == null) {
+                continue;
+            }
+            requireSameLength(query, candidate);
+
+            float denominator = queryNorm * (float) Math.sqrt(OPS.sumOfSquares(candidate));
+            float score = denominator == 0f ? 0f : OPS.dot(query, candidate) / denominator;
+            if (size == limit && score <= scores[size - 1]) {
+                continue;
+            }
+
+            // Insertion into a short sorted array beats a heap for the small k used by search
+            int position = size < limit ? size++ : size - 1;
+            while (position > 0 && scores[position - 1] < score) {
+                scores[position] = scores[position - 1];
+                indices[position] = indices[position - 1];
+                position--;
+            }
+            scores[position] = score;
+            indices[position] = i;
+        }
+
+        return size == limit ? indices : Arrays.copyOf(indices, size);
+    }
+
+    public static boolean isSimd() {
+        return OPS instanceof SimdVectorOps;
+    }
+
+    private static void requireSameLength(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException(
+                "Vectors have different dimensions: " + a.length + " and " + b.length + ".");
+        }
+    }
+
+    private static VectorOps loadOps() {
+        try {
+            // Loaded by name, so a JVM started without the incubator module never links against it
+            var ops = (VectorOps) Class.forName(VectorMath.class.getPackageName() + ".SimdVectorOps")
+                .getDeclaredConstructor()
+                .newInstance();
+            log.info("Vector math uses the JDK Vector API");
+            return ops;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.info("jdk.incubator.vector is not available, vector math falls back to scalar loops");
+            return new ScalarVectorOps();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.ddmdemo.util;
+
+// Kernels behind VectorMath, so the Vector API implementation can be left out when its module is missing
+interface VectorOps {
+
+    float dot(float[] a, float[] b);
+
+    float sumOfSquares(float[] a);
+
+    void scale(float[] a, float factor);
+
+    // Exact; 384 products of signed bytes stay far below the int range
+    int dot(byte[] a, byte[] b);
+}
@@ -0,0 +1,119 @@
+package com.example.ddmdemo.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Properties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Optional client-side int8 quantization. The calibration is stored next to the embedding store,
+// since it has to match the vectors that were quantized with it across restarts.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorQuantization {
+
+    private final EmbeddingCache embeddingCache;
+
+    private final VectorizationUtil vectorizationUtil;
+
+    @Value("${vectorization.quantization.enabled:false}")
+    private boolean enabled;
+
+    @Value("${vectorization.quantization.calibration-file:embedding-cache/int8-calibration.properties}")
+    private Path calibrationFile;
+
+    @Value("${vectorization.quantization.confidence:0.999}")
+    private double confidence;
+
+    @Value("${vectorization.quantization.min-sample:1000}")
+    private int minSample;
+
+    @Value("${vectorization.quantization.sample-size:20000}")
+    private int sampleSize;
+
+    private volatile ScalarQuantizer quantizer;
+
+    // Empty while disabled, or until enough embeddings exist to calibrate on
+    public Optional<ScalarQuantizer> quantizer() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        if (quantizer == null) {
+            synchronized (this) {
+                if (quantizer == null) {
+                    quantizer = load().orElseGet(this::calibrate);
+                }
+            }
+        }
+        return Optional.ofNullable(quantizer);
+    }
+
+    public synchronized Optional<ScalarQuantizer> recalibrate() {
+        quantizer = calibrate();
+        return Optional.ofNullable(quantizer);
+    }
+
+    private ScalarQuantizer calibrate() {
+        var sample = embeddingCache.sample(sampleSize);
+        if (sample.size() < minSample) {
+            log.info("Only {} embedding(s) stored, int8 calibration needs at least {}", sample.size(), minSample);
+            return null;
+        }
+
+        var calibrated = ScalarQuantizer.calibrate(sample, confidence);
+        log.info("Calibrated int8 quantization on {} embedding(s): [{}, {}]", sample.size(),
+            calibrated.getMin(), calibrated.getMax());
+        store(calibrated, sample.size());
+        return calibrated;
+    }
+
+    private Optional<ScalarQuantizer> load() {
+        var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(calibrationFile)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not read int8 calibration from {}", calibrationFile, e);
+            return Optional.empty();
+        }
+
+        // A calibration made for another model does not fit these vectors
+        if (!vectorizationUtil.getModelId().equals(properties.getProperty("model"))) {
+            return Optional.empty();
+        }
+        return Optional.of(new ScalarQuantizer(Float.parseFloat(properties.getProperty("min")),
+            Float.parseFloat(properties.getProperty("max"))));
+    }
+
+    private void store(ScalarQuantizer calibrated, int sampleCount) {
+        var properties = new Properties();
+        properties.setProperty("model", vectorizationUtil.getModelId());
+        properties.setProperty("min", Float.toString(calibrated.getMin()));
+        properties.setProperty("max", Float.toString(calibrated.getMax()));
+        properties.setProperty("confidence", Double.toString(confidence));
+        properties.setProperty("sample", Integer.toString(sampleCount));
+        properties.setProperty("created", Instant.now().toString());
+
+        try {
+            if (calibrationFile.getParent() != null) {
+                Files.createDirectories(calibrationFile.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(calibrationFile)) {
+                properties.store(writer, "int8 scalar quantization calibration");
+            }
+        } catch (IOException e) {
+            log.warn("Could not store int8 calibration to {}", calibrationFile, e);
+        }
+    }
+}
@@ -2,50 +2,188 @@ package com.example.ddmdemo.util;
 
 import ai.djl.MalformedModelException;
 import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
-import ai.djl.inference.Predictor;
 import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelNotFoundException;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.training.util.ProgressBar;
 import ai.djl.translate.TranslateException;
+import com.example.ddmdemo.exceptionhandling.exception.ModelNotReadyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+// The model is loaded and warmed up on a background thread, so the context (and search) starts
+// without waiting for the model zoo or PyTorch.
 @Component
+@Slf4j
 public class VectorizationUtil {
 
     private static final String DJL_MODEL = "sentence-transformers/all-MiniLM-L6-v2";
 
     private static final String DJL_PATH = "djl://ai.djl.huggingface.pytorch/" + DJL_MODEL;
 
-    private static Predictor<String, float[]> predictor;
+    private final int poolSize;
+
+    private final long borrowTimeoutMs;
+
+    private final String modelPath;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CompletableFuture<PredictorPool<String, float[]>> ready = new CompletableFuture<>();
+
+    private volatile ZooModel<String, float[]> model;
+
+    private volatile PredictorPool<String, float[]> predictors;
 
     @Autowired
-    public VectorizationUtil() throws ModelNotFoundException, MalformedModelException, IOException {
-        Criteria<String, float[]> criteria =
-            Criteria.builder()
-                .setTypes(String.class, float[].class)
-                .optModelUrls(DJL_PATH)
-                .optEngine("PyTorch")
-                .optTranslatorFactory(new TextEmbeddingTranslatorFactory())
-                .optProgress(new ProgressBar())
-                .build();
+    public VectorizationUtil(@Value("${vectorization.pool.size:0}") int poolSize,
+                             @Value("${vectorization.pool.borrow-timeout-ms:5000}") long borrowTimeoutMs,
+                             @Value("${vectorization.pytorch.num-threads:1}") int numThreads,
+                             @Value("${vectorization.pytorch.num-interop-threads:1}") int numInteropThreads,
+                             @Value("${vectorization.model-path:}") String modelPath,
+                             MeterRegistry meterRegistry) {
+        // Read once, when the PyTorch engine initializes during the first model load; 0 keeps its default
+        if (numThreads > 0) {
+            System.setProperty("ai.djl.pytorch.num_threads", String.valueOf(numThreads));
+        }
+        if (numInteropThreads > 0) {
+            System.setProperty("ai.djl.pytorch.num_interop_threads", String.valueOf(numInteropThreads));
+        }
+
+        this.poolSize = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.modelPath = modelPath;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void startWarmUp() {
+        var thread = new Thread(this::warmUp, "embedding-model-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void close() {
+        ready.cancel(false);
+        if (predictors != null) {
+            predictors.close();
+        }
+        if (model != null) {
+            model.close();
+        }
+    }
+
+    private void warmUp() {
+        long startedAt = System.nanoTime();
+        try {
+            model = loadModel();
+
+            // Predictors share the loaded weights, each only adds its own native buffers
+            var pool = new PredictorPool<>(model, poolSize, borrowTimeoutMs, meterRegistry);
+            // The pool hands predictors out round-robin, so this runs one forward pass on each
+            for (int i = 0; i < poolSize; i++) {
+                pool.execute(predictor -> predictor.predict("warm-up"));
+            }
+
+            predictors = pool;
+            long elapsed = System.nanoTime() - startedAt;
+            Timer.builder("embedding.model.warmup")
+                .description("Time from context start until the embedding model answered")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Loaded {} with {} predictor(s) in {} ms", modelPath.isBlank() ? DJL_MODEL : modelPath,
+                poolSize, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            ready.complete(pool);
+        } catch (ModelNotFoundException | MalformedModelException | IOException | TranslateException
+                 | RuntimeException e) {
+            log.error("Embedding model could not be loaded, ingest stays unavailable", e);
+            ready.completeExceptionally(e);
+        }
+    }
+
+    private ZooModel<String, float[]> loadModel()
+        throws ModelNotFoundException, MalformedModelException, IOException {
+        var builder = Criteria.builder()
+            .setTypes(String.class, float[].class)
+            .optEngine("PyTorch")
+            .optTranslatorFactory(new TextEmbeddingTranslatorFactory())
+            .optProgress(new ProgressBar());
+
+        // A local copy of the model avoids the model zoo download at startup
+        if (modelPath.isBlank()) {
+            builder.optModelUrls(DJL_PATH);
+        } else {
+            builder.optModelPath(Path.of(modelPath));
+        }
+        return builder.build().loadModel();
+    }
+
+    public boolean isReady() {
+        return predictors != null;
+    }
+
+    public boolean isFailed() {
+        return ready.isCompletedExceptionally();
+    }
+
+    // Waits up to timeoutMs for the warm-up; fails right away if it already failed
+    public void awaitReady(long timeoutMs) {
+        try {
+            ready.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ModelNotReadyException("Embedding model is still warming up, try again shortly.");
+        } catch (ExecutionException | CancellationException e) {
+            throw new ModelNotReadyException("Embedding model could not be loaded.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelNotReadyException("Interrupted while waiting for the embedding model.");
+        }
+    }
+
+    public static double cosineSimilarity(float[] vectorA, float[] vectorB) {
+        return VectorMath.cosine(vectorA, vectorB);
+    }
+
+    public float[] getEmbedding(String text) throws TranslateException {
+        return requirePredictors().execute(predictor -> predictor.predict(text));
+    }
+
+    // One padded forward pass for the whole list; vectors come back in input order
+    public List<float[]> getEmbeddings(List<String> texts) throws TranslateException {
+        return requirePredictors().execute(predictor -> predictor.batchPredict(texts));
+    }
 
-        ZooModel<String, float[]> model = criteria.loadModel();
-        VectorizationUtil.predictor = model.newPredictor();
+    public String getModelId() {
+        return DJL_MODEL;
     }
 
-    public static double cosineSimilarity(INDArray vectorA, INDArray vectorB) {
-        double dotProduct = vectorA.mul(vectorB).sumNumber().doubleValue();
-        double magnitudeA = vectorA.norm2Number().doubleValue();
-        double magnitudeB = vectorB.norm2Number().doubleValue();
-        return dotProduct / (magnitudeA * magnitudeB);
+    // Known before the model is loaded, so consumers can size their own resources at startup
+    public int getPoolSize() {
+        return poolSize;
     }
 
-    public static float[] getEmbedding(String text) throws TranslateException {
-        return Nd4j.create(predictor.predict(text)).toFloatVector();
+    private PredictorPool<String, float[]> requirePredictors() {
+        var pool = predictors;
+        if (pool == null) {
+            throw new ModelNotReadyException(isFailed()
+                ? "Embedding model could not be loaded."
+                : "Embedding model is still warming up, try again shortly.");
+        }
+        return pool;
     }
 }
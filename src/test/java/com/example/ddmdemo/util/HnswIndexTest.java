@@ -0,0 +1,135 @@
+package com.example.ddmdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The graph must find nearly what a brute-force scan finds, and a saved graph must answer exactly as it did
+// before it was written, quantizer included
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 16;
+
+    private static final int COUNT = 1000;
+
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recallAgainstBruteForce() {
+        var vectors = randomVectors(COUNT, 1L);
+        var index = filled(new HnswIndex(DIMENSIONS, 16, 100), vectors);
+
+        var queries = randomVectors(50, 2L);
+        int found = 0;
+        for (float[] query : queries) {
+            var expected = new HashSet<>(bruteForce(vectors, query, K));
+            for (var neighbor : index.search(query, K, 64, id -> false)) {
+                if (expected.contains(neighbor.id())) {
+                    found++;
+                }
+            }
+        }
+
+        double recall = (double) found / (queries.size() * K);
+        assertTrue(recall >= 0.95, "recall@" + K + " was " + recall);
+    }
+
+    @Test
+    void searchSkipsExcludedIds() {
+        var vectors = randomVectors(100, 3L);
+        var index = filled(new HnswIndex(DIMENSIONS, 16, 100), vectors);
+
+        var neighbors = index.search(vectors.get(7), K, 64, "report-7"::equals);
+
+        assertEquals(K, neighbors.size());
+        assertTrue(neighbors.stream().noneMatch(neighbor -> neighbor.id().equals("report-7")));
+    }
+
+    @Test
+    void floatIndexSurvivesSaveAndLoad() throws IOException {
+        var vectors = randomVectors(COUNT, 4L);
+        var index = filled(new HnswIndex(DIMENSIONS, 16, 100), vectors);
+        index.remove("report-3");
+        var file = directory.resolve("title.hnsw");
+
+        index.save(file);
+        var loaded = HnswIndex.load(file);
+
+        assertNull(loaded.getQuantizer());
+        assertEquals(index.size(), loaded.size());
+        assertNull(loaded.vector("report-3"));
+        assertArrayEquals(index.vector("report-5"), loaded.vector("report-5"));
+        assertSameAnswers(index, loaded, randomVectors(20, 5L));
+    }
+
+    @Test
+    void quantizedIndexKeepsItsQuantizerAcrossSaveAndLoad() throws IOException {
+        var vectors = randomVectors(COUNT, 6L);
+        var normalized = vectors.stream().map(vector -> VectorMath.normalize(vector.clone())).toList();
+        var quantizer = ScalarQuantizer.calibrate(normalized, 0.99);
+        var index = filled(new HnswIndex(DIMENSIONS, 16, 100, quantizer), vectors);
+        var file = directory.resolve("behavior.hnsw");
+
+        index.save(file);
+        var loaded = HnswIndex.load(file);
+
+        assertNotNull(loaded.getQuantizer());
+        assertEquals(quantizer.getMin(), loaded.getQuantizer().getMin());
+        assertEquals(quantizer.getMax(), loaded.getQuantizer().getMax());
+        assertEquals(index.size(), loaded.size());
+        assertArrayEquals(index.vector("report-5"), loaded.vector("report-5"));
+        assertSameAnswers(index, loaded, randomVectors(20, 7L));
+    }
+
+    private static void assertSameAnswers(HnswIndex expected, HnswIndex actual, List<float[]> queries) {
+        for (float[] query : queries) {
+            assertEquals(expected.search(query, K, 64, id -> false), actual.search(query, K, 64, id -> false));
+        }
+    }
+
+    private static HnswIndex filled(HnswIndex index, List<float[]> vectors) {
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("report-" + i, vectors.get(i));
+        }
+        return index;
+    }
+
+    private static List<String> bruteForce(List<float[]> vectors, float[] query, int k) {
+        var normalizedQuery = VectorMath.normalize(query.clone());
+        return IntStream.range(0, vectors.size()).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) ->
+                        VectorMath.dot(VectorMath.normalize(vectors.get(i).clone()), normalizedQuery)).reversed())
+                .limit(k)
+                .map(i -> "report-" + i)
+                .toList();
+    }
+
+    private static List<float[]> randomVectors(int count, long seed) {
+        var random = new Random(seed);
+        var vectors = new ArrayList<float[]>(count);
+        for (int i = 0; i < count; i++) {
+            var vector = new float[DIMENSIONS];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
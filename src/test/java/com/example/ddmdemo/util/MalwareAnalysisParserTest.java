@@ -0,0 +1,179 @@
+package com.example.ddmdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.example.ddmdemo.model.MalwareAnalysis;
+import com.example.ddmdemo.model.ThreatClassification;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// The single-pass parser must give exactly what the regex parser it replaced gave, on whole texts, on texts
+// fed in pieces and on texts cut off anywhere
+class MalwareAnalysisParserTest {
+
+    private static final String SERBIAN_KEY_VALUE = """
+            Izveštaj o analizi malvera
+            Ime i prezime forenzičara: Marko Marković
+            Bezbednosna organizacija: CERT RS
+            Naziv malvera: Emotet
+            Klasifikacija pretnje: visoka
+            Heš: 44d88612fea8a8f36de82e1278abb02f
+            Opis ponašanja: Preuzima dodatne module i šalje podatke na C2 server.
+            """;
+
+    private static final String ENGLISH_KEY_VALUE = """
+            Malware analysis report
+            Analyst: Jane Doe
+            Security organization: ACME CSIRT
+            Malware name: TrickBot
+            Threat classification: Critical
+            Sample hash: 275a021bbfb6489e54d471899f7db9d1663fc695ec2fe2a2c4538aabf651fd0f
+            Description:
+
+            Steals banking credentials and spreads laterally.
+            """;
+
+    private static final String TEMPLATE = """
+            Organizacija CERT Srbije
+            Klasifikacija: kritična, 5d41402abc4b2a76b9719d911017c592
+            Analiza uzorka ukazuje na ransomware LockBit 3.0. Opis ponašanja malvera/pretnje:
+            Šifruje datoteke na mrežnim diskovima
+            i briše shadow kopije.
+
+            Petar Petrović
+            Potpis forenzičara
+            """;
+
+    // Key:value lines in both languages mixed with the template layout
+    private static final String MIXED = """
+            Malware: Qakbot
+            Organizacija: SRB-CERT
+            Uzorak ukazuje na bankarski trojanac. Opis ponašanja malvera / pretnje:
+            Krade kolačiće iz pregledača.
+            Classification: medium
+            Potpis
+            """;
+
+    private static final List<String> SAMPLES = List.of(SERBIAN_KEY_VALUE, ENGLISH_KEY_VALUE, TEMPLATE, MIXED);
+
+    private final LegacyMalwareAnalysisParser legacyParser = new LegacyMalwareAnalysisParser();
+
+    private MalwareAnalysisParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new MalwareAnalysisParser();
+        ReflectionTestUtils.setField(parser, "timeBudgetMs", 2000L);
+    }
+
+    @Test
+    void templateLayoutGivesGoldenFields() {
+        var analysis = parser.parse(TEMPLATE);
+
+        assertEquals("CERT Srbije", analysis.getSecurityOrganization());
+        assertEquals(ThreatClassification.CRITICAL, analysis.getThreatClassification());
+        assertEquals("5d41402abc4b2a76b9719d911017c592", analysis.getSampleHash());
+        assertEquals("ransomware LockBit 3.0", analysis.getMalwareName());
+        assertEquals("Šifruje datoteke na mrežnim diskovima\ni briše shadow kopije.",
+                analysis.getBehaviorDescription());
+        assertEquals("Petar Petrović", analysis.getAnalystFullName());
+    }
+
+    @Test
+    void serbianAndEnglishAliasesGiveGoldenFields() {
+        var serbian = parser.parse(SERBIAN_KEY_VALUE);
+        assertEquals("Marko Marković", serbian.getAnalystFullName());
+        assertEquals("CERT RS", serbian.getSecurityOrganization());
+        assertEquals("Emotet", serbian.getMalwareName());
+        assertEquals(ThreatClassification.HIGH, serbian.getThreatClassification());
+        assertEquals("44d88612fea8a8f36de82e1278abb02f", serbian.getSampleHash());
+
+        var english = parser.parse(ENGLISH_KEY_VALUE);
+        assertEquals("Jane Doe", english.getAnalystFullName());
+        assertEquals("ACME CSIRT", english.getSecurityOrganization());
+        assertEquals("TrickBot", english.getMalwareName());
+        assertEquals(ThreatClassification.CRITICAL, english.getThreatClassification());
+        assertEquals("Steals banking credentials and spreads laterally.", english.getBehaviorDescription());
+    }
+
+    @Test
+    void matchesLegacyParserOnSamples() {
+        for (String sample : SAMPLES) {
+            assertSameAsLegacy(sample);
+            assertSameAsLegacy(sample.replace("\n", "\r\n"));
+        }
+    }
+
+    @Test
+    void matchesLegacyParserOnTruncatedSamples() {
+        for (String sample : SAMPLES) {
+            for (int end = 0; end <= sample.length(); end++) {
+                assertSameAsLegacy(sample.substring(0, end));
+            }
+        }
+    }
+
+    @Test
+    void sessionFedInChunksMatchesWholeText() {
+        for (String sample : SAMPLES) {
+            var expected = parser.parse(sample);
+            for (int chunkSize : new int[] {1, 2, 7, 64}) {
+                var session = parser.newSession();
+                for (int start = 0; start < sample.length(); start += chunkSize) {
+                    session.feed(sample.substring(start, Math.min(sample.length(), start + chunkSize)));
+                }
+                assertEquals(expected, session.finish(), "chunk size " + chunkSize);
+            }
+        }
+    }
+
+    // Lines of all samples plus near-misses of every anchor, shuffled into new documents
+    @Test
+    void matchesLegacyParserOnShuffledLines() {
+        var lines = new ArrayList<String>();
+        for (String sample : SAMPLES) {
+            lines.addAll(sample.lines().toList());
+        }
+        lines.addAll(List.of("", "   ", "Opis", "Opis pona", "malvera/pretnje:", "malvera / pretnje :", "Potpis",
+                "Potpis forenzicara", "Ana Anić", "ukazuje na", "Klasifikacija: low, not-a-hash",
+                "Klasifikacija:", "Organizacija", "Hash:", "Hash: 0123456789abcdef0123456789abcdef",
+                "a:b", "Key without alias: value", "<Ime Prezime>", "Opis ponašanja: ."));
+
+        var random = new Random(20260117L);
+        for (int i = 0; i < 2000; i++) {
+            var document = new StringBuilder();
+            int lineCount = 1 + random.nextInt(20);
+            for (int j = 0; j < lineCount; j++) {
+                document.append(lines.get(random.nextInt(lines.size())))
+                        .append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+            }
+            assertSameAsLegacy(document.toString());
+        }
+    }
+
+    @Test
+    void exhaustedBudgetReturnsPartialAnalysis() {
+        ReflectionTestUtils.setField(parser, "timeBudgetMs", 0L);
+        var text = new StringBuilder("Organizacija: CERT RS\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("Filler line without any recognized key\n");
+        }
+        text.append("Malware: Emotet\n");
+
+        var analysis = parser.parse(text.toString());
+
+        assertEquals("CERT RS", analysis.getSecurityOrganization());
+        assertNull(analysis.getMalwareName());
+    }
+
+    // The old parser only ever saw text PdfTextExtractor had trimmed; the new one trims by itself
+    private void assertSameAsLegacy(String text) {
+        MalwareAnalysis expected = legacyParser.parse(text.trim());
+        assertEquals(expected, parser.parse(text), () -> "Input:\n" + text);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.ddmdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The store is an on-disk format read back after every restart, so the byte layout is pinned here and
+// reopening must give back every vector, also past the first mapped segment
+class MappedEmbeddingStoreTest {
+
+    private static final int DIMENSIONS = 4;
+
+    // One more segment than the 16384 records of the first
+    private static final int PAST_FIRST_SEGMENT = 16_384 + 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordLayoutIsHeaderThenKeyThenLittleEndianFloats() throws IOException {
+        var file = directory.resolve("embeddings.bin");
+        try (var store = new MappedEmbeddingStore(file, DIMENSIONS, 10)) {
+            store.put(new EmbeddingKey(1L, 2L, 3L, 4L), new float[] {0.5f, -1.25f, 3f, 0f});
+        }
+
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x454D4231, bytes.getInt(0));
+        assertEquals(DIMENSIONS, bytes.getInt(4));
+        assertEquals(1, bytes.getInt(8));
+        assertEquals(1L, bytes.getLong(16));
+        assertEquals(2L, bytes.getLong(24));
+        assertEquals(3L, bytes.getLong(32));
+        assertEquals(4L, bytes.getLong(40));
+        assertEquals(0.5f, bytes.getFloat(48));
+        assertEquals(-1.25f, bytes.getFloat(52));
+        assertEquals(3f, bytes.getFloat(56));
+        assertEquals(0f, bytes.getFloat(60));
+    }
+
+    @Test
+    void reopenedStoreReadsBackRecordsAcrossSegments() throws IOException {
+        var file = directory.resolve("embeddings.bin");
+        try (var store = new MappedEmbeddingStore(file, DIMENSIONS, PAST_FIRST_SEGMENT)) {
+            for (int i = 0; i < PAST_FIRST_SEGMENT; i++) {
+                store.put(key(i), vector(i));
+            }
+        }
+
+        try (var reopened = new MappedEmbeddingStore(file, DIMENSIONS, PAST_FIRST_SEGMENT + 1)) {
+            assertEquals(PAST_FIRST_SEGMENT, reopened.size());
+            for (int i = 0; i < PAST_FIRST_SEGMENT; i++) {
+                assertArrayEquals(vector(i), reopened.get(key(i)), "record " + i);
+            }
+            assertNull(reopened.get(key(PAST_FIRST_SEGMENT)));
+
+            // Appending after a reopen continues in the second segment
+            reopened.put(key(-1), vector(-1));
+            assertArrayEquals(vector(-1), reopened.get(key(-1)));
+        }
+    }
+
+    @Test
+    void storeStopsAtItsRecordLimitAndKeepsFirstVectorPerKey() throws IOException {
+        try (var store = new MappedEmbeddingStore(directory.resolve("embeddings.bin"), DIMENSIONS, 2)) {
+            store.put(key(0), vector(0));
+            store.put(key(0), vector(9));
+            store.put(key(1), vector(1));
+            store.put(key(2), vector(2));
+
+            assertEquals(2, store.size());
+            assertArrayEquals(vector(0), store.get(key(0)));
+            assertNull(store.get(key(2)));
+        }
+    }
+
+    @Test
+    void storeWithOtherDimensionsStartsEmpty() throws IOException {
+        var file = directory.resolve("embeddings.bin");
+        try (var store = new MappedEmbeddingStore(file, DIMENSIONS, 10)) {
+            store.put(key(0), vector(0));
+        }
+
+        try (var reopened = new MappedEmbeddingStore(file, DIMENSIONS * 2, 10)) {
+            assertEquals(0, reopened.size());
+            assertNull(reopened.get(key(0)));
+        }
+    }
+
+    @Test
+    void sampleSpreadsOverTheWholeFile() throws IOException {
+        try (var store = new MappedEmbeddingStore(directory.resolve("embeddings.bin"), DIMENSIONS, 100)) {
+            for (int i = 0; i < 100; i++) {
+                store.put(key(i), vector(i));
+            }
+
+            var sample = store.sample(10);
+
+            assertEquals(10, sample.size());
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(vector(i * 10), sample.get(i));
+            }
+        }
+    }
+
+    private static EmbeddingKey key(int i) {
+        return new EmbeddingKey(i, ~i, (long) i << 32, 42L);
+    }
+
+    private static float[] vector(int i) {
+        return new float[] {i, -i, i * 0.5f, 1f / (i + 0.5f)};
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.ddmdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Codes end up in saved indexes, so the mapping onto bytes, its error and the dot product on codes are pinned here
+class ScalarQuantizerTest {
+
+    private static final float MIN = -0.5f;
+
+    private static final float MAX = 0.75f;
+
+    private static final float HALF_STEP = (MAX - MIN) / 255 / 2;
+
+    @Test
+    void roundTripErrorStaysWithinHalfAStep() {
+        var quantizer = new ScalarQuantizer(MIN, MAX);
+        var vector = randomVector(new Random(1L), 4096, MIN, MAX);
+
+        var restored = quantizer.dequantize(quantizer.quantize(vector));
+
+        for (int i = 0; i < vector.length; i++) {
+            assertTrue(Math.abs(vector[i] - restored[i]) <= HALF_STEP * 1.001f,
+                "value " + vector[i] + " came back as " + restored[i]);
+        }
+    }
+
+    @Test
+    void rangeEndsMapOntoTheFullByteRange() {
+        var quantizer = new ScalarQuantizer(MIN, MAX);
+
+        assertArrayEquals(new byte[] {-128, 127}, quantizer.quantize(new float[] {MIN, MAX}));
+        assertArrayEquals(new float[] {MIN, MAX}, quantizer.dequantize(new byte[] {-128, 127}), 1e-6f);
+    }
+
+    @Test
+    void valuesOutsideTheRangeAreClamped() {
+        var quantizer = new ScalarQuantizer(MIN, MAX);
+
+        assertArrayEquals(new byte[] {-128, 127}, quantizer.quantize(new float[] {-10f, 10f}));
+    }
+
+    @Test
+    void dotOnCodesMatchesDotOfDequantizedVectors() {
+        var quantizer = new ScalarQuantizer(MIN, MAX);
+        var random = new Random(2L);
+
+        for (int round = 0; round < 20; round++) {
+            var a = quantizer.quantize(randomVector(random, 384, MIN, MAX));
+            var b = quantizer.quantize(randomVector(random, 384, MIN, MAX));
+
+            float expected = VectorMath.dot(quantizer.dequantize(a), quantizer.dequantize(b));
+            assertEquals(expected, quantizer.dot(a, b), 1e-3f);
+            assertEquals(quantizer.dot(a, b), quantizer.dot(a, quantizer.correction(a), b, quantizer.correction(b)));
+        }
+    }
+
+    @Test
+    void calibrationClipsOutliersToTheConfidenceInterval() {
+        var sample = new ArrayList<float[]>();
+        var values = new float[1001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i - 500) / 500f;
+        }
+        sample.add(values);
+        sample.add(new float[] {-100f, 100f});
+
+        var quantizer = ScalarQuantizer.calibrate(sample, 0.99);
+
+        assertTrue(quantizer.getMin() > -1.01f && quantizer.getMin() < -0.98f, "min was " + quantizer.getMin());
+        assertTrue(quantizer.getMax() < 1.01f && quantizer.getMax() > 0.98f, "max was " + quantizer.getMax());
+    }
+
+    @Test
+    void calibrationWithFullConfidenceKeepsTheExtremes() {
+        var quantizer = ScalarQuantizer.calibrate(List.of(new float[] {0.25f, -2f}, new float[] {3f}), 1.0);
+
+        assertEquals(-2f, quantizer.getMin());
+        assertEquals(3f, quantizer.getMax());
+    }
+
+    @Test
+    void emptySampleOrRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.calibrate(List.of(), 0.99));
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.calibrate(List.of(new float[0]), 0.99));
+        assertThrows(IllegalArgumentException.class, () -> new ScalarQuantizer(1f, 1f));
+        assertThrows(IllegalArgumentException.class, () -> new ScalarQuantizer(Float.NaN, 1f));
+    }
+
+    private static float[] randomVector(Random random, int dimensions, float min, float max) {
+        var vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = min + random.nextFloat() * (max - min);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.ddmdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// The calibration has to outlive a restart, since stored codes are only meaningful with the range they were made with
+class VectorQuantizationTest {
+
+    @TempDir
+    Path directory;
+
+    private Path calibrationFile;
+
+    private EmbeddingCache embeddingCache;
+
+    private VectorizationUtil vectorizationUtil;
+
+    @BeforeEach
+    void setUp() {
+        calibrationFile = directory.resolve("cache").resolve("int8-calibration.properties");
+        embeddingCache = mock(EmbeddingCache.class);
+        vectorizationUtil = mock(VectorizationUtil.class);
+        when(vectorizationUtil.getModelId()).thenReturn("model-a");
+        when(embeddingCache.sample(anyInt())).thenReturn(sample(-1f, 1f));
+    }
+
+    @Test
+    void calibrationIsStoredAndReloadedWithoutSampling() throws IOException {
+        var calibrated = quantization().quantizer().orElseThrow();
+
+        var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(calibrationFile)) {
+            properties.load(reader);
+        }
+        assertEquals("model-a", properties.getProperty("model"));
+        assertEquals(calibrated.getMin(), Float.parseFloat(properties.getProperty("min")));
+        assertEquals(calibrated.getMax(), Float.parseFloat(properties.getProperty("max")));
+
+        var restartedCache = mock(EmbeddingCache.class);
+        var reloaded = quantization(restartedCache).quantizer().orElseThrow();
+
+        verify(restartedCache, never()).sample(anyInt());
+        assertEquals(calibrated.getMin(), reloaded.getMin());
+        assertEquals(calibrated.getMax(), reloaded.getMax());
+    }
+
+    @Test
+    void calibrationOfAnotherModelIsReplaced() {
+        quantization().quantizer().orElseThrow();
+
+        when(vectorizationUtil.getModelId()).thenReturn("model-b");
+        when(embeddingCache.sample(anyInt())).thenReturn(sample(-3f, 3f));
+        var recalibrated = quantization().quantizer().orElseThrow();
+
+        assertEquals(-3f, recalibrated.getMin());
+        assertEquals(3f, recalibrated.getMax());
+    }
+
+    @Test
+    void tooSmallSampleLeavesQuantizationOffAndStoresNothing() {
+        when(embeddingCache.sample(anyInt())).thenReturn(sample(-1f, 1f).subList(0, 5));
+
+        assertTrue(quantization().quantizer().isEmpty());
+        assertFalse(Files.exists(calibrationFile));
+    }
+
+    @Test
+    void disabledQuantizationNeverSamples() {
+        var quantization = quantization();
+        ReflectionTestUtils.setField(quantization, "enabled", false);
+
+        assertTrue(quantization.quantizer().isEmpty());
+        verify(embeddingCache, never()).sample(anyInt());
+    }
+
+    private VectorQuantization quantization() {
+        return quantization(embeddingCache);
+    }
+
+    private VectorQuantization quantization(EmbeddingCache cache) {
+        var quantization = new VectorQuantization(cache, vectorizationUtil);
+        ReflectionTestUtils.setField(quantization, "enabled", true);
+        ReflectionTestUtils.setField(quantization, "calibrationFile", calibrationFile);
+        ReflectionTestUtils.setField(quantization, "confidence", 1.0);
+        ReflectionTestUtils.setField(quantization, "minSample", 10);
+        ReflectionTestUtils.setField(quantization, "sampleSize", 100);
+        return quantization;
+    }
+
+    // Evenly spread values between min and max, both included
+    private static List<float[]> sample(float min, float max) {
+        var sample = new ArrayList<float[]>();
+        for (int i = 0; i < 20; i++) {
+            var vector = new float[8];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = min + (max - min) * (i * vector.length + j) / 159f;
+            }
+            sample.add(vector);
+        }
+        return sample;
+    }
+}